@@ -1,53 +1,109 @@
 package tr.com.logidex.cnetdedicated.app;
 import javafx.beans.property.SimpleBooleanProperty;
-import tr.com.logidex.cnetdedicated.device.DataBlock;
 import tr.com.logidex.cnetdedicated.device.DataType;
-import tr.com.logidex.cnetdedicated.device.RegisteredDataBlock;
+import tr.com.logidex.cnetdedicated.device.ScanUpdate;
 import tr.com.logidex.cnetdedicated.device.Tag;
+import tr.com.logidex.cnetdedicated.device.TagCodec;
+import tr.com.logidex.cnetdedicated.device.TagTable;
 import tr.com.logidex.cnetdedicated.protocol.*;
 import tr.com.logidex.cnetdedicated.protocol.connection.*;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.FrameCheckException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoAcknowledgeMessageFromThePLCException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoResponseException;
+import tr.com.logidex.cnetdedicated.util.VirtualThreads;
 import tr.com.logidex.cnetdedicated.util.XGBCNetUtil;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPReader.TCPReaderObserver {
+/**
+ * Client for one PLC connection. Create one instance per PLC; {@link #getInstance()} returns a
+ * shared default instance for applications that talk to a single PLC.
+ */
+public class XGBCNetClient implements ConnectionObserver {
     public static final char ENQ = (char) 0x05;
     public static final char EOT = (char) 0x04;
     private static final boolean USE_FRAME_CHECK = true;
+    /**
+     * Represents the delay (in milliseconds) to wait for a response in the XGBCNetClient class.
+     */
+    private static final long RESPONSE_TIMEOUT_MS = 3000;
+    private static final int CNET_REGISTRATION_SLOTS = 32; // Kayıt numaraları 00-1F, hattaki yazımı slotText()
+    // Eski sürümlerde clearRegisteredDevices() bu grubu koruyordu, varsayılan olarak sabitlenir
+    private static final int LEGACY_PINNED_GROUP = 9;
     public static SimpleBooleanProperty touchScreen = new SimpleBooleanProperty(true);
-    private static XGBCNetClient instance;
     Logger logger = Logger.getLogger(getClass().getName());
     private int stationNumber;
     private String strStationNumber;
     private Level logLevel = Level.SEVERE;
     private ConcurrentHashMap<String, Object> requestResponseMap = new ConcurrentHashMap<>();
-    private Map<Integer, List<Tag>> regNumbersAndDevices = new TreeMap<Integer, List<Tag>>();
+    private Map<Integer, List<Tag>> regNumbersAndDevices = new ConcurrentSkipListMap<Integer, List<Tag>>();
+    // Kayıtlı grupların tarama çerçeveleri, kayıt sırasında bir kez hazırlanır
+    // Kayıt numarası başına, protokolün çerçeve sınırlarına göre bölünmüş alt çerçeveler
+    private final Map<Integer, List<SubFrame>> executeFrames = new ConcurrentHashMap<>();
+    // Sürekli adres aralıklarıyla okunan kayıt grupları
+    private final Map<Integer, PlannedGroup> plannedGroups = new ConcurrentHashMap<>();
+    // Cnet: mantıksal grupların fiziksel kayıt numaraları; kiralama ve çerçevelerin kuyruğa alınması aynı kilitle yapılır
+    private final RegistrationSlotManager slotManager = new RegistrationSlotManager(CNET_REGISTRATION_SLOTS);
+    private final ReentrantLock registrationLock = new ReentrantLock();
+    private volatile boolean readPlanning = false;
+    private volatile int readPlanGapTolerance = ReadPlanner.DEFAULT_GAP_TOLERANCE;
     /**
-     * Represents the delay (in milliseconds) to wait for a response in the XGBCNetClient class.
+     * Serializes request/response exchanges on connections that cannot pipeline (Cnet).
+     * Each exchange is chained behind {@link #exchangeTail}; the lock only guards the swap.
      */
-    private Connection connection;
+    private final ReentrantLock exchangeLock = new ReentrantLock();
+    private CompletableFuture<?> exchangeTail = CompletableFuture.completedFuture(null);
+    // Yeniden bağlanınca oturum geri yüklenene kadar sıradaki Cnet istekleri bekletilir
+    private volatile CompletableFuture<Void> sessionRestored = CompletableFuture.completedFuture(null);
+    private volatile Connection connection;
     private ProtocolHandler protocolHandler;
-
-
-    private XGBCNetClient() {
+    private volatile ConnectionParams connectionParams;
+    // Cevabı beklenen istekler; bağlantı koparsa okumalar yeniden bağlanınca tekrar gönderilir
+    private final ConcurrentHashMap<String, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<InFlightRequest> replayQueue = new ConcurrentLinkedQueue<>();
+    private volatile boolean autoReconnect = true;
+    private volatile boolean disconnectRequested = false;
+    private volatile long reconnectInitialDelayMs = 50;
+    private volatile long reconnectMaxDelayMs = 5000;
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private volatile CompletableFuture<Void> reconnected = CompletableFuture.completedFuture(null);
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(
+            VirtualThreads.newThreadFactory("XGBCNetReconnect", Thread.NORM_PRIORITY));
+
+
+    public XGBCNetClient() {
         logger.setLevel(logLevel);
+        slotManager.setPinned(LEGACY_PINNED_GROUP, true);
     }
 
 
+    /**
+     * Returns the process-wide default client. Prefer creating one instance per PLC with
+     * {@link #XGBCNetClient()}; this method is kept for single-PLC applications.
+     */
     public static XGBCNetClient getInstance() {
-        if (instance == null) {
-            synchronized (XGBCNetClient.class) {
-                instance = new XGBCNetClient();
-            }
-        }
-        return instance;
+        return DefaultInstanceHolder.INSTANCE;
+    }
+
+
+    private static final class DefaultInstanceHolder {
+        private static final XGBCNetClient INSTANCE = new XGBCNetClient();
     }
 
 
@@ -63,7 +119,9 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
 
 
     public boolean connect(ConnectionParams connectionParams) throws Exception {
-        connection = ConnectionFactory.createConnection(connectionParams);
+        this.connectionParams = connectionParams;
+        disconnectRequested = false;
+        connection = ConnectionFactory.createConnection(connectionParams, this);
         this.stationNumber = connectionParams.getStationNumber();
         strStationNumber = this.stationNumber < 10 ? "0" + stationNumber : String.valueOf(stationNumber);
 
@@ -76,6 +134,14 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
             protocolHandler = new CnetProtocolHandler(stationNumber);
         }
 
+        // Yeni bağlantıda PLC'deki kayıtlara güvenilmez, gruplar ilk okumada yeniden kaydedilir
+        registrationLock.lock();
+        try {
+            slotManager.releaseAll();
+        } finally {
+            registrationLock.unlock();
+        }
+
         boolean result = connection.connect();
         return result;
     }
@@ -90,52 +156,17 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
 
 
     public void disconnect() {
-        if (isConnected()) {
+        disconnectRequested = true; // Otomatik yeniden bağlanmayı durdur
+        failReplays(new IOException("Bağlantı kullanıcı tarafından kapatıldı"));
+        if (connection != null) {
             connection.disconnect();
         }
     }
 
 
-    public synchronized void registerDevicesToMonitor(List<Tag> tags, String registrationNumber) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    public void registerDevicesToMonitor(List<Tag> tags, String registrationNumber) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
         try {
-            if (connection.isBinaryProtocol()) {
-                // FENet: Do batch read immediately
-                Object request = protocolHandler.buildRegisterRequest(tags, registrationNumber);
-                Object response = sendRequestFrameGeneric(request);
-
-                // Parse batch response
-                FENetProtocolHandler fenetHandler = (FENetProtocolHandler) protocolHandler;
-                String[] dataValues = fenetHandler.parseBatchReadResponse(response, tags);
-
-                // Update tag values
-                for (int i = 0; i < tags.size(); i++) {
-                    if (!tags.get(i).dontUpdateProperty().get()) {
-                        tags.get(i).setValueAsHexString(dataValues[i]);
-                    }
-                }
-
-                // Store tags for future executeRegisteredDeviceToMonitor calls
-                int regNo = Integer.parseInt(XGBCNetUtil.addZeroIfNeed(registrationNumber));
-                regNumbersAndDevices.put(regNo, tags);
-                logger.info("FENet batch read registered " + tags.size() + " tags with registration number: " + regNo);
-
-            } else {
-                // Cnet: Traditional register approach
-                StringBuilder data = new StringBuilder();
-                data.append(String.format("%02x", tags.size()));
-                for (Tag da : tags) {
-                    data.append(da.formatToRequest());
-                }
-                String message = finalizeRequestMessage(Command.X, CommandType.RSS, data.toString(), XGBCNetUtil.addZeroIfNeed(registrationNumber));
-                ResponseEvaluator res = sendRequestFrame(message);
-                logger.info(res.toString());
-
-                if (res.getResponse() instanceof AckResponse && res.getResponse().getCommand() == Command.X) {
-                    String regNo = res.getResponse().getStructrizedDataArea();
-                    logger.info(regNo + " kayit numarasi icin degisken kaydi yapiliyor.. Tag adedi: " + tags.size());
-                    regNumbersAndDevices.put(Integer.parseInt(regNo), tags);
-                }
-            }
+            await(registerDevicesToMonitorAsync(tags, registrationNumber));
         } catch (Exception e) {
             logger.severe("Error registering devices to monitor: " + e.getMessage());
             throw new IOException("Error registering devices: " + e.getMessage(), e);
@@ -143,185 +174,515 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
     }
 
 
-    public synchronized List<Tag> executeRegisteredDeviceToMonitor(String registrationNumber) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    /**
+     * Asynchronous variant of {@link #registerDevicesToMonitor(List, String)}.
+     * The future completes once the PLC accepted the registration.
+     */
+    public CompletableFuture<Void> registerDevicesToMonitorAsync(List<Tag> tags, String registrationNumber) {
+        int regNumber = Integer.parseInt(XGBCNetUtil.addZeroIfNeed(registrationNumber));
+        PlannedGroup planned = readPlanning ? planGroup(tags) : null;
+        if (planned != null) {
+            // Kayıt gerekmez, grup her taramada sürekli okumalarla okunur
+            logger.info(regNumber + " kayit numarasi icin okuma plani: " + planned.plan);
+            regNumbersAndDevices.put(regNumber, tags);
+            plannedGroups.put(regNumber, planned);
+            executeFrames.remove(regNumber);
+            releaseRegistration(regNumber);
+            return readPlannedAsync(planned, tags).thenApply(t -> null);
+        }
+        List<SubFrame> frames = new ArrayList<>();
+        for (List<Tag> part : protocolHandler.splitForBatchRead(tags)) {
+            frames.add(new SubFrame(new ArrayList<>(part)));
+        }
+        CompletableFuture<Void> registered;
+        if (connection.isBinaryProtocol()) {
+            // FENet: Do batch read immediately, the parts are pipelined on the socket
+            ScanUpdate scan = new ScanUpdate(tags.size());
+            List<CompletableFuture<?>> steps = new ArrayList<>(frames.size());
+            for (SubFrame frame : frames) {
+                steps.add(readSubFrameAsync(frame, regNumber, scan));
+            }
+            registered = publishScan(CompletableFuture.allOf(steps.toArray(new CompletableFuture[0])), scan, tags).thenApply(t -> null);
+        } else {
+            // Cnet: Traditional register approach, one registration number per part
+            registered = monitorCnetGroupAsync(regNumber, frames, true, null);
+        }
+        return registered.thenRun(() -> {
+            plannedGroups.remove(regNumber);
+            regNumbersAndDevices.put(regNumber, tags);
+            executeFrames.put(regNumber, frames);
+            logger.info(regNumber + " kayit numarasi icin degisken kaydi yapildi. Tag adedi: " + tags.size()
+                    + ", cerceve: " + frames.size());
+        });
+    }
+
+
+    public List<Tag> executeRegisteredDeviceToMonitor(String registrationNumber) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
         try {
-            registrationNumber = XGBCNetUtil.addZeroIfNeed(registrationNumber);
-            int regNumberInInteger = Integer.parseInt(registrationNumber);
+            return await(executeRegisteredDeviceToMonitorAsync(registrationNumber));
+        } catch (Exception e) {
+            logger.severe("Error executing registered device monitor: " + e.getMessage());
+            throw new IOException("Error executing registered device: " + e.getMessage(), e);
+        }
+    }
 
-            // Get the registered tags
-            List<Tag> tags = regNumbersAndDevices.get(regNumberInInteger);
-            if (tags == null) {
-                logger.warning("No tags registered for registration number: " + registrationNumber);
-                return null;
-            }
 
-            if (connection.isBinaryProtocol()) {
-                // FENet: Do batch read
-                Object request = protocolHandler.buildRegisterRequest(tags, registrationNumber);
-                Object response = sendRequestFrameGeneric(request);
-
-                // Parse batch response
-                FENetProtocolHandler fenetHandler = (FENetProtocolHandler) protocolHandler;
-                String[] dataValues = fenetHandler.parseBatchReadResponse(response, tags);
-
-                // Update tag values
-                for (int i = 0; i < tags.size(); i++) {
-                    if (!tags.get(i).dontUpdateProperty().get()) {
-                        tags.get(i).setValueAsHexString(dataValues[i]);
-                    }
+    /**
+     * Asynchronous variant of {@link #executeRegisteredDeviceToMonitor(String)}.
+     * The future completes with the updated tags, or with null if nothing is registered under the number.
+     */
+    public CompletableFuture<List<Tag>> executeRegisteredDeviceToMonitorAsync(String registrationNumber) {
+        String regNoText = XGBCNetUtil.addZeroIfNeed(registrationNumber);
+        int regNumberInInteger = Integer.parseInt(regNoText);
+
+        // Get the registered tags
+        List<Tag> tags = regNumbersAndDevices.get(regNumberInInteger);
+        if (tags == null) {
+            logger.warning("No tags registered for registration number: " + regNoText);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        PlannedGroup planned = plannedGroups.get(regNumberInInteger);
+        if (planned != null) {
+            return readPlannedAsync(planned, tags);
+        }
+        List<SubFrame> frames = executeFrames.get(regNumberInInteger);
+        if (frames == null) {
+            logger.warning("No frames registered for registration number: " + regNoText);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Alt çerçeveler sırayla (Cnet) veya paralel (FENet) gider, sonuç tek liste olarak döner
+        ScanUpdate scan = new ScanUpdate(tags.size());
+        if (!connection.isBinaryProtocol()) {
+            return publishScan(monitorCnetGroupAsync(regNumberInInteger, frames, false, scan), scan, tags);
+        }
+        List<CompletableFuture<?>> reads = new ArrayList<>(frames.size());
+        for (SubFrame frame : frames) {
+            reads.add(readSubFrameAsync(frame, regNumberInInteger, scan));
+        }
+        return publishScan(CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])), scan, tags);
+    }
+
+
+    /**
+     * Publishes the values of all frames of the group at once when the last read finished. The values
+     * of a group whose read failed are kept, but their quality shows that they are not current.
+     */
+    private static CompletableFuture<List<Tag>> publishScan(CompletableFuture<?> reads, ScanUpdate scan, List<Tag> tags) {
+        return reads.whenComplete((v, error) -> {
+            scan.publish();
+            if (error != null) {
+                for (Tag tag : tags) {
+                    tag.setQuality(TagTable.QUALITY_BAD);
                 }
+            }
+        }).thenApply(v -> tags);
+    }
 
-                logger.info("FENet batch read executed for " + tags.size() + " tags");
-                return tags;
 
-            } else {
-                // Cnet: Traditional execute approach
-                String message = finalizeRequestMessage(Command.Y, CommandType.NONE, registrationNumber, registrationNumber);
-                ResponseEvaluator re = sendRequestFrame(message);
-                logger.info(re.getResponse().toString());
-
-                if (re.getResponse().getCommand() == Command.Y) {
-                    RegisteredDataBlock rdb = new RegisteredDataBlock();
-                    String dataAreaForXorY = re.getRawResponse().substring(4, re.getRawResponse().length() - 3);
-                    //parse registration number
-                    StringBuilder dataBlockBuilder = new StringBuilder(dataAreaForXorY);
-                    char[] regNumber = new char[2];
-                    dataBlockBuilder.getChars(0, 2, regNumber, 0);
-                    rdb.setRegistrationNumber(regNumber);
-                    //parse NumberOfBlocks
-                    char[] numOfBlocks = new char[2];
-                    dataBlockBuilder.getChars(2, 4, numOfBlocks, 0);
-                    rdb.setNumberOfBlocks(numOfBlocks);
-                    //parse all data blocks
-                    String allDataBlocks = dataBlockBuilder.substring(4, dataAreaForXorY.length());
-                    rdb.setDataBlocks(parseDataForYCommand(allDataBlocks));
-                    // update values
-                    regNumberInInteger = Integer.parseInt(new String(rdb.getRegistrationNumber()));
-                    for (Map.Entry<Integer, List<Tag>> entry : regNumbersAndDevices.entrySet()) {
-                        if (entry.getKey().equals(regNumberInInteger)) {
-                            for (int i = 0; i < rdb.getDataBlocks().size(); i++) {
-                                String value = rdb.getDataBlocks().get(i).getData();
-                                if (!entry.getValue().get(i).dontUpdateProperty().get()) {
-                                    entry.getValue().get(i).setValueAsHexString(value);
-                                }
-                            }
-                        }
+    /**
+     * Cnet: leases registration numbers for the group and queues its frames while holding the registration
+     * lock, so a group that later takes over these numbers is queued behind them. A group that is not
+     * resident (new, evicted or forgotten on reconnect) is registered before it is read.
+     *
+     * @param reregister register the frames even if the group is resident, e.g. when its tags changed
+     * @param scan       if not null, queue the Y frames after the registration and collect their values
+     */
+    private CompletableFuture<Void> monitorCnetGroupAsync(int regNumber, List<SubFrame> frames, boolean reregister, ScanUpdate scan) {
+        List<CompletableFuture<?>> steps = new ArrayList<>(frames.size() * 2);
+        registrationLock.lock();
+        try {
+            if (reregister) {
+                slotManager.release(regNumber);
+            }
+            RegistrationSlotManager.Lease lease = slotManager.acquire(regNumber, frames.size(), regNumber);
+            if (lease.needsRegistration()) {
+                List<CompletableFuture<?>> registrations = new ArrayList<>(frames.size());
+                for (int i = 0; i < frames.size(); i++) {
+                    List<Tag> part = frames.get(i).tags;
+                    String slot = slotText(lease.getSlot(i));
+                    registrations.add(sendRequestFrameGenericAsync(lift(() -> protocolHandler.buildRegisterRequest(part, slot))));
+                }
+                logger.info(regNumber + " kayit grubu kaydediliyor: " + lease);
+                CompletableFuture.allOf(registrations.toArray(new CompletableFuture[0])).whenComplete((v, e) -> {
+                    if (e != null) {
+                        releaseRegistration(regNumber, lease); // Bir sonraki okumada yeniden kaydedilir
                     }
-                    return regNumbersAndDevices.get(regNumberInInteger);
+                });
+                steps.addAll(registrations);
+            }
+            if (scan != null) {
+                for (int i = 0; i < frames.size(); i++) {
+                    steps.add(readSubFrameAsync(frames.get(i), lease.getSlot(i), scan));
                 }
             }
-        } catch (Exception e) {
-            logger.severe("Error executing registered device monitor: " + e.getMessage());
-            throw new IOException("Error executing registered device: " + e.getMessage(), e);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            registrationLock.unlock();
         }
-        return null;
+        return CompletableFuture.allOf(steps.toArray(new CompletableFuture[0]));
     }
 
 
-    private List<DataBlock> parseDataForYCommand(String input) {
-        List<DataBlock> dataBlocks = new ArrayList<>();
-        int index = 0;
-        while (index < input.length()) {
-            // Her bir bloğun başlangıcındaki iki karakteri alarak numberOfData'yı oluştur
-            char[] numberOfData = {input.charAt(index), input.charAt(index + 1)};
-            index += 2;
-            // numberOfData'nın değerini hesapla ve data'yı oluştur
-            int numberOfDataValue = Integer.parseInt(new String(numberOfData));
-            String data = input.substring(index, index + numberOfDataValue * 2);
-            index += numberOfDataValue * 2;
-            // Yeni device.cnetdedicated.tr.com.logidex.spreadingmachinecwithcnetprotocol.DataBlock oluştur ve listeye ekle
-            DataBlock dataBlock = new DataBlock(numberOfData, data);
-            dataBlocks.add(dataBlock);
+    private void releaseRegistration(int regNumber) {
+        registrationLock.lock();
+        try {
+            slotManager.release(regNumber);
+        } finally {
+            registrationLock.unlock();
         }
-        return dataBlocks;
     }
 
 
     /**
-     * Generic method to send request and get response, supporting both Cnet and FENet protocols
+     * Releases the group only if it still holds the numbers of the lease
      */
-    private Object sendRequestFrameGeneric(Object request) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
-        if (!isConnected()) {
-            throw new IOException("Mesaj gonderme istegi yapildi, fakat port kapali!");
+    private void releaseRegistration(int regNumber, RegistrationSlotManager.Lease lease) {
+        registrationLock.lock();
+        try {
+            slotManager.release(regNumber, lease);
+        } finally {
+            registrationLock.unlock();
         }
+    }
 
-        String requestId = java.util.UUID.randomUUID().toString();
 
-        // Send request based on type (String for Cnet, byte[] for FENet)
-        if (request instanceof String) {
-            logger.log(Level.INFO, "Request (Cnet): " + request);
-            connection.sendRequest((String) request, requestId);
-        } else if (request instanceof byte[]) {
-            logger.log(Level.INFO, "Request (FENet): Binary data, length=" + ((byte[]) request).length);
-            connection.sendRequest((byte[]) request, requestId);
-        } else {
-            throw new IOException("Unsupported request type");
+    /**
+     * @param slot Cnet registration number of the frame; FENet ignores it
+     * @param scan collects the decoded values until the whole group was read
+     */
+    private CompletableFuture<Void> readSubFrameAsync(SubFrame frame, int slot, ScanUpdate scan) {
+        CompiledRequest request = frame.requestFor(protocolHandler, slot);
+        if (connection.isBinaryProtocol()) {
+            return sendRequestFrameGenericAsync(CompletableFuture.completedFuture(request.nextFrame()))
+                    .thenApply(unchecked(response -> {
+                        updateFromBatchResponse(response, frame, scan);
+                        logger.info("FENet batch read executed for " + frame.tags.size() + " tags");
+                        return null;
+                    }));
         }
+        // Cnet: Traditional execute approach
+        return sendRequestFrameAsync((String) request.nextFrame())
+                .thenApply(unchecked(re -> {
+                    updateFromExecuteResponse(re, frame, slot, scan);
+                    return null;
+                }));
+    }
 
-        // Wait for response
-        long t = System.currentTimeMillis();
-        while (connection.getResponseReader().getResponse(requestId) == null) {
-            if (System.currentTimeMillis() - t > 3000) {
-                throw new NoResponseException();
-            }
-        }
 
-        Object response = connection.getResponseReader().getResponse(requestId);
+    /**
+     * Cnet registration numbers are two hex digits on the wire, slot 10 is sent as "0A"
+     */
+    private static String slotText(int slot) {
+        return String.format("%02X", slot);
+    }
 
-        // Validate response based on protocol
-        if (!protocolHandler.isResponseValid(response)) {
-            logger.log(Level.SEVERE, "Invalid response received");
-            throw new NoAcknowledgeMessageFromThePLCException();
+
+    /**
+     * Okuma planı açıksa grubu adres aralıklarına böler. Plan okuma sayısını azaltmıyorsa null döner:
+     * Cnet'te grup tek bir aralığa sığmalı, FENet'te istekler sokette paralel gittiği için en az bir aralık yeterli.
+     */
+    private PlannedGroup planGroup(List<Tag> tags) {
+        ReadPlanner.ReadPlan plan = ReadPlanner.plan(tags, readPlanGapTolerance, protocolHandler.getMaxContinuousReadWords());
+        if (plan.getRanges().isEmpty()) {
+            return null;
         }
+        if (!connection.isBinaryProtocol() && (plan.getRanges().size() > 1 || !plan.getIndividualTags().isEmpty())) {
+            return null;
+        }
+        List<SubFrame> individualFrames = new ArrayList<>();
+        for (List<Tag> part : protocolHandler.splitForBatchRead(plan.getIndividualTags())) {
+            individualFrames.add(new SubFrame(new ArrayList<>(part)));
+        }
+        return new PlannedGroup(plan, individualFrames);
+    }
+
 
-        logger.info("Response received and validated successfully");
-        return response;
+    /**
+     * Reads every range of the group (and, on FENet, the tags outside the ranges with batch reads)
+     * and slices the returned words back into the tags.
+     */
+    private CompletableFuture<List<Tag>> readPlannedAsync(PlannedGroup group, List<Tag> tags) {
+        ScanUpdate scan = new ScanUpdate(tags.size());
+        List<CompiledRequest> requests = group.requestsFor(protocolHandler);
+        List<ReadPlanner.Range> ranges = group.plan.getRanges();
+        List<CompletableFuture<?>> reads = new ArrayList<>(requests.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            ReadPlanner.Range range = ranges.get(i);
+            int rangeIndex = i;
+            reads.add(sendRequestFrameGenericAsync(CompletableFuture.completedFuture(requests.get(i).nextFrame()))
+                    .thenApply(unchecked(response -> {
+                        long[] words = protocolHandler.parseRangeReadResponse(response, range);
+                        long[] previous = group.swapLastWords(rangeIndex, words);
+                        for (int t = 0; t < range.getTags().size(); t++) {
+                            Tag tag = range.getTags().get(t);
+                            int offset = range.getOffset(t);
+                            if (tag.isUpdatePaused() || previous != null && previous[offset] == words[offset] && tag.isCurrent()) {
+                                continue;
+                            }
+                            scan.add(tag, words[offset], 4);
+                        }
+                        return null;
+                    })));
+        }
+        for (SubFrame frame : group.individualFrames) {
+            reads.add(readSubFrameAsync(frame, 0, scan));
+        }
+        return publishScan(CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])), scan, tags);
     }
 
-    private ResponseEvaluator sendRequestFrame(String requestMessage) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
-        if (!isConnected()) {
-            throw new IOException("Mesaj gonderme istegi yapildi, fakat port kapali!");
+
+    /**
+     * FENet toplu okuma cevabını ayrıştırır, tag değerlerini taramaya ekler.
+     * Baytları çerçevenin önceki cevabıyla aynı olan bloklar çözülmez: ilk farklı bayta kadar olan bloklar
+     * doğrudan atlanır, sonrakiler blok blok karşılaştırılır.
+     */
+    private void updateFromBatchResponse(Object response, SubFrame frame, ScanUpdate scan) throws Exception {
+        FENetProtocolHandler fenetHandler = (FENetProtocolHandler) protocolHandler;
+        byte[] data = fenetHandler.parseBatchReadData(response, frame.tags);
+        byte[] previous = (byte[]) frame.swapLastData(data);
+        boolean comparable = previous != null && previous.length == data.length;
+        int firstChange = comparable ? Arrays.mismatch(previous, data) : 0;
+        if (firstChange < 0) {
+            firstChange = data.length;
         }
-        logger.log(Level.INFO, "Request       :" + requestMessage);
-        String requestId = java.util.UUID.randomUUID().toString(); // Benzersiz bir istek kimliği oluştur
-        connection.sendRequest(requestMessage, requestId);
-        // Cevabı beklemek için
-        long t = System.currentTimeMillis();
-        while (connection.getResponseReader().getResponse(requestId) == null) {
-            if (System.currentTimeMillis() - t > 3000) {
-                throw new NoResponseException();
+        int offset = 0;
+        for (Tag tag : frame.tags) {
+            int length = TagCodec.byteLength(tag.getDataType());
+            int end = offset + length;
+            boolean unchanged = comparable && (end <= firstChange || Arrays.equals(previous, offset, end, data, offset, end));
+            if (!tag.isUpdatePaused() && !(unchanged && tag.isCurrent())) {
+                scan.add(tag, TagCodec.decodeLittleEndian(data, offset, length), length * 2);
             }
+            offset = end;
         }
-        Object responseObj = connection.getResponseReader().getResponse(requestId);
-        String response = (String) responseObj;
-        logger.log(Level.INFO, "Response for request " + requestId + ": " + response);
-        if (response.trim().isEmpty()) {
-            throw new NoResponseException();
+    }
+
+
+    /**
+     * Cnet Y komutunun cevabını ayrıştırır, kayıtlı tag değerlerini taramaya ekler.
+     * Bloklar ara String üretilmeden doğrudan ham değere çevrilir; karakterleri çerçevenin önceki
+     * cevabıyla aynı olan bloklar hiç çözülmez.
+     */
+    private List<Tag> updateFromExecuteResponse(ResponseEvaluator re, SubFrame frame, int slot, ScanUpdate scan) throws IOException {
+        logger.info(re.getResponse().toString());
+        if (re.getResponse().getCommand() != Command.Y) {
+            return null;
         }
-        if (((char) response.getBytes()[0] != Response.ACK)) {
-            throw new NoAcknowledgeMessageFromThePLCException();
+        // ACK + istasyon (2) + komut (1) + kayıt numarası (2) + blok sayısı (2), ardından her blok: byte sayısı (2) + veri
+        String raw = re.getRawResponse();
+        if (!raw.regionMatches(true, 4, slotText(slot), 0, 2)) {
+            throw new IOException("Y response of registration " + raw.substring(4, 6) + ", expected " + slotText(slot));
         }
-        logger.info("The frame is checking...");
-        boolean packageIsValid = XGBCNetUtil.checkFrame(response);
-        if (packageIsValid) {
-            logger.info("Frame check OK!");
-        } else {
-            logger.severe("Frame check ERROR !!");
-            throw new FrameCheckException();
+        String previous = (String) frame.swapLastData(raw);
+        boolean comparable = previous != null && previous.length() == raw.length();
+        List<Tag> tags = frame.tags;
+        int end = raw.length() - 3;
+        int index = 8;
+        for (int i = 0; index < end && i < tags.size(); i++) {
+            int digits = (int) TagCodec.parseHex(raw, index, index + 2) * 2;
+            index += 2;
+            Tag tag = tags.get(i);
+            boolean unchanged = comparable && raw.regionMatches(index - 2, previous, index - 2, digits + 2);
+            if (!tag.isUpdatePaused() && !(unchanged && tag.isCurrent())) {
+                scan.add(tag, TagCodec.parseHex(raw, index, index + digits), digits);
+            }
+            index += digits;
         }
-        if (!response.isEmpty()) {
+        return tags;
+    }
+
+
+    /**
+     * Generic method to send request and get response, supporting both Cnet and FENet protocols
+     */
+    private CompletableFuture<Object> sendRequestFrameGenericAsync(CompletableFuture<Object> builtRequest) {
+        return validated(builtRequest.thenCompose(this::exchange));
+    }
+
+
+    /**
+     * Fails the exchange if the PLC did not acknowledge the request
+     */
+    private CompletableFuture<Object> validated(CompletableFuture<Object> exchange) {
+        return exchange.thenApply(unchecked(response -> {
+            // Validate response based on protocol
+            if (!protocolHandler.isResponseValid(response)) {
+                logger.log(Level.SEVERE, "Invalid response received");
+                throw new NoAcknowledgeMessageFromThePLCException();
+            }
+            logger.info("Response received and validated successfully");
+            return response;
+        }));
+    }
+
+
+    private CompletableFuture<ResponseEvaluator> sendRequestFrameAsync(String requestMessage) {
+        logger.log(Level.INFO, "Request       :" + requestMessage);
+        return exchange(requestMessage).thenApply(unchecked(responseObj -> {
+            String response = (String) responseObj;
+            logger.log(Level.INFO, "Response: " + response);
+            if (response.trim().isEmpty()) {
+                throw new NoResponseException();
+            }
+            if (((char) response.getBytes()[0] != Response.ACK)) {
+                throw new NoAcknowledgeMessageFromThePLCException();
+            }
+            logger.info("The frame is checking...");
+            boolean packageIsValid = XGBCNetUtil.checkFrame(response);
+            if (packageIsValid) {
+                logger.info("Frame check OK!");
+            } else {
+                logger.severe("Frame check ERROR !!");
+                throw new FrameCheckException();
+            }
             ResponseEvaluator re = new ResponseEvaluator(response);
             if (re.getResponse() instanceof AckResponse) {
                 return re;
+            }
+            logger.log(Level.SEVERE, "ERROR! -> " + re.getResponse());
+            throw new NoAcknowledgeMessageFromThePLCException();
+        }));
+    }
+
+
+    /**
+     * Sends the request and returns a future that the reader completes with the raw response.
+     * Connections that cannot pipeline get the request chained behind the previous exchange,
+     * so no thread is blocked while it waits for its turn on the line. After a reconnect the
+     * chain also waits until the session was restored.
+     */
+    private CompletableFuture<Object> exchange(Object request) {
+        if (!isConnected()) {
+            return CompletableFuture.failedFuture(new IOException("Mesaj gonderme istegi yapildi, fakat port kapali!"));
+        }
+        if (connection.supportsPipelining()) {
+            return transmit(request);
+        }
+        exchangeLock.lock();
+        try {
+            CompletableFuture<Object> result = exchangeTail.handle((r, e) -> null)
+                    .thenCompose(v -> sessionRestored)
+                    .thenCompose(v -> transmit(request));
+            exchangeTail = result;
+            return result;
+        } finally {
+            exchangeLock.unlock();
+        }
+    }
+
+
+    private CompletableFuture<Object> transmit(Object request) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        send(new InFlightRequest(request, protocolHandler.isIdempotent(request), result));
+        return result;
+    }
+
+
+    private void send(InFlightRequest entry) {
+        Connection current = connection;
+        String requestId = java.util.UUID.randomUUID().toString(); // Benzersiz bir istek kimliği oluştur
+        ResponseReader reader = current.getResponseReader();
+        CompletableFuture<Object> pending = reader.responseFuture(requestId);
+        inFlight.put(requestId, entry);
+        try {
+            // Send request based on type (String for Cnet, byte[] for FENet)
+            if (entry.request instanceof String) {
+                logger.log(Level.INFO, "Request (Cnet): " + entry.request);
+                current.sendRequest((String) entry.request, requestId);
+            } else if (entry.request instanceof byte[]) {
+                logger.log(Level.INFO, "Request (FENet): Binary data, length=" + ((byte[]) entry.request).length);
+                current.sendRequest((byte[]) entry.request, requestId);
             } else {
-                logger.log(Level.SEVERE, "ERROR! -> " + re.getResponse());
-                System.exit(-1);
+                throw new IOException("Unsupported request type");
             }
-        } else {
-            logger.log(Level.SEVERE, "No response! Unknown request for the PLC! Probably the BCC value of our request was wrong!");
-            System.exit(-1);
+        } catch (IOException | RuntimeException e) {
+            inFlight.remove(requestId);
+            reader.clearResponse(requestId);
+            entry.result.completeExceptionally(e);
+            return;
+        }
+        // Cevabı beklemek için thread bloklanmaz, reader future'ı tamamlar
+        pending.orTimeout(RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+            reader.clearResponse(requestId);
+            if (!inFlight.remove(requestId, entry)) {
+                return; // Bağlantı koptuğunda tekrar gönderilmek üzere alındı veya hata verildi
+            }
+            if (error instanceof TimeoutException) {
+                entry.result.completeExceptionally(new NoResponseException());
+            } else if (error != null) {
+                entry.result.completeExceptionally(error instanceof CompletionException ? error.getCause() : error);
+            } else {
+                entry.result.complete(response);
+            }
+        });
+    }
+
+
+    /**
+     * Parks the calling thread until the future completes and rethrows the protocol exceptions it failed with.
+     */
+    private <T> T await(CompletableFuture<T> future) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NoResponseException) {
+                throw (NoResponseException) cause;
+            }
+            if (cause instanceof NoAcknowledgeMessageFromThePLCException) {
+                throw (NoAcknowledgeMessageFromThePLCException) cause;
+            }
+            if (cause instanceof FrameCheckException) {
+                throw (FrameCheckException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the response", e);
+        }
+    }
+
+
+    /**
+     * Step of an asynchronous request that may fail with a checked protocol exception.
+     */
+    @FunctionalInterface
+    private interface Step<T, R> {
+        R apply(T t) throws Throwable;
+    }
+
+
+    @FunctionalInterface
+    private interface Builder<R> {
+        R build() throws Throwable;
+    }
+
+
+    private static <T, R> Function<T, R> unchecked(Step<T, R> step) {
+        return t -> {
+            try {
+                return step.apply(t);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+
+    private static CompletableFuture<Object> lift(Builder<Object> builder) {
+        try {
+            return CompletableFuture.completedFuture(builder.build());
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
         }
-        return null;
     }
 
 
@@ -354,19 +715,9 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
     }
 
 
-    public synchronized Tag readSingle(Tag tag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    public Tag readSingle(Tag tag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
         try {
-            Object request = protocolHandler.buildReadRequest(tag, CommandType.SS);
-            Object response = sendRequestFrameGeneric(request);
-            String dataHex = protocolHandler.parseResponse(response);
-
-            // For Cnet compatibility, extract data from position 4 onwards if it's in the old format
-            if (dataHex.length() > 4 && !connection.isBinaryProtocol()) {
-                dataHex = dataHex.substring(4);
-            }
-
-            tag.setValueAsHexString(dataHex);
-            return tag;
+            return await(readAsync(tag));
         } catch (Exception e) {
             logger.severe("Error reading tag: " + e.getMessage());
             throw new IOException("Error reading tag: " + e.getMessage(), e);
@@ -374,7 +725,33 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
     }
 
 
-    public synchronized Tag readSingleString(Tag tag, int countToRead) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    /**
+     * Reads the tag without blocking the caller. The future completes with the same tag once its
+     * value was updated. Continuations run on the connection's reader thread unless an async
+     * variant with an executor is used.
+     */
+    public CompletableFuture<Tag> readAsync(Tag tag) {
+        return sendRequestFrameGenericAsync(lift(() -> protocolHandler.buildReadRequest(tag, CommandType.SS)))
+                .thenApply(unchecked(response -> {
+                    String dataHex = protocolHandler.parseResponse(response);
+
+                    // For Cnet compatibility, extract data from position 4 onwards if it's in the old format
+                    if (dataHex.length() > 4 && !connection.isBinaryProtocol()) {
+                        dataHex = dataHex.substring(4);
+                    }
+
+                    tag.setValueAsHexString(dataHex);
+                    return tag;
+                }));
+    }
+
+
+    public Tag readSingleString(Tag tag, int countToRead) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+        return await(readSingleStringAsync(tag, countToRead));
+    }
+
+
+    public CompletableFuture<Tag> readSingleStringAsync(Tag tag, int countToRead) {
         if ((tag.getDataType() != DataType.Word)) {
             throw new IllegalArgumentException("The tag's data type must be a word when reading a string!");
         }
@@ -382,27 +759,18 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
             throw new IllegalArgumentException("The parameter countToRead must not be greater than 64!");
         }
         String charCount = XGBCNetUtil.addZeroIfNeed(String.format("%02x", countToRead / 2));
-        ResponseEvaluator re = sendRequestFrame(finalizeRequestMessage(Command.R, CommandType.SB, tag.formatToRequest() + charCount, null));
-        String data = re.getResponse().getStructrizedDataArea();
-        tag.setValueAsHexString(data.substring(4));
-        return tag;
+        return sendRequestFrameAsync(finalizeRequestMessage(Command.R, CommandType.SB, tag.formatToRequest() + charCount, null))
+                .thenApply(re -> {
+                    String data = re.getResponse().getStructrizedDataArea();
+                    tag.setValueAsHexString(data.substring(4));
+                    return tag;
+                });
     }
 
 
-    public synchronized Response writeSingle(Tag tag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    public Response writeSingle(Tag tag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
         try {
-            Object request = protocolHandler.buildWriteRequest(tag, CommandType.SS);
-            Object response = sendRequestFrameGeneric(request);
-
-            // For Cnet compatibility, return ResponseEvaluator response
-            if (connection.isBinaryProtocol()) {
-                // FENet - create a simple ACK response
-                return new AckResponse();
-            } else {
-                // Cnet - use existing logic
-                ResponseEvaluator re = new ResponseEvaluator((String) response);
-                return re.getResponse();
-            }
+            return await(writeRequestAsync(lift(() -> protocolHandler.buildWriteRequest(tag, CommandType.SS))));
         } catch (Exception e) {
             logger.severe("Error writing tag: " + e.getMessage());
             throw new IOException("Error writing tag: " + e.getMessage(), e);
@@ -410,20 +778,9 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
     }
 
 
-    public synchronized Response writeDouble(Tag tag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    public Response writeDouble(Tag tag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
         try {
-            Object request = protocolHandler.buildWriteDoubleRequest(tag);
-            Object response = sendRequestFrameGeneric(request);
-
-            // For Cnet compatibility, return ResponseEvaluator response
-            if (connection.isBinaryProtocol()) {
-                // FENet - create a simple ACK response
-                return new AckResponse();
-            } else {
-                // Cnet - use existing logic
-                ResponseEvaluator re = new ResponseEvaluator((String) response);
-                return re.getResponse();
-            }
+            return await(writeRequestAsync(lift(() -> protocolHandler.buildWriteDoubleRequest(tag))));
         } catch (Exception e) {
             logger.severe("Error writing double tag: " + e.getMessage());
             throw new IOException("Error writing double tag: " + e.getMessage(), e);
@@ -431,20 +788,61 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
     }
 
 
-    public synchronized Response writeSingleString(Tag tag, String strData, int theLimitToWrite) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
-        try {
-            Object request = protocolHandler.buildWriteStringRequest(tag, strData, theLimitToWrite);
-            Object response = sendRequestFrameGeneric(request);
+    /**
+     * Writes the tag's current hex value without blocking the caller.
+     * Word tags are written with a single write, Dword tags with a double write.
+     */
+    public CompletableFuture<Response> writeAsync(Tag tag) {
+        if (tag.getDataType() == DataType.Dword) {
+            return writeRequestAsync(lift(() -> protocolHandler.buildWriteDoubleRequest(tag)));
+        }
+        return writeRequestAsync(lift(() -> protocolHandler.buildWriteRequest(tag, CommandType.SS)));
+    }
 
-            // For Cnet compatibility, return ResponseEvaluator response
-            if (connection.isBinaryProtocol()) {
-                // FENet - create a simple ACK response
-                return new AckResponse();
-            } else {
-                // Cnet - use existing logic
-                ResponseEvaluator re = new ResponseEvaluator((String) response);
-                return re.getResponse();
+
+    /**
+     * Writes the current hex values of many Word tags with as few frames as possible.
+     *
+     * @see #writeWordsAsync(List)
+     */
+    public void writeWords(List<Tag> tags) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+        await(writeWordsAsync(tags));
+    }
+
+
+    /**
+     * Writes the current hex values of many Word tags. On Cnet, words at consecutive addresses
+     * go out as one continuous write and the rest as individual writes of up to 16 blocks
+     * (see {@link WriteCoalescer}). FENet sends one write per tag, pipelined on the socket.
+     * The future fails with the first failing frame.
+     */
+    public CompletableFuture<Void> writeWordsAsync(List<Tag> tags) {
+        List<CompletableFuture<Response>> writes = new ArrayList<>();
+        if (connection != null && connection.isBinaryProtocol()) {
+            for (Tag tag : tags) {
+                writes.add(writeRequestAsync(lift(() -> protocolHandler.buildWriteRequest(tag, CommandType.SS))));
+            }
+        } else {
+            List<WriteCoalescer.Batch> batches;
+            try {
+                batches = WriteCoalescer.plan(tags);
+            } catch (IllegalArgumentException e) {
+                return CompletableFuture.failedFuture(e);
             }
+            for (WriteCoalescer.Batch batch : batches) {
+                writes.add(writeRequestAsync(lift(() -> batch.isContinuous()
+                        ? protocolHandler.buildContinuousWriteRequest(batch.getTags())
+                        : protocolHandler.buildMultiWriteRequest(batch.getTags()))));
+            }
+            logger.info(tags.size() + " word writes sent in " + batches.size() + " frames");
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+    }
+
+
+    public Response writeSingleString(Tag tag, String strData, int theLimitToWrite) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+        try {
+            return await(writeStringAsync(tag, strData, theLimitToWrite));
         } catch (Exception e) {
             logger.severe("Error writing string tag: " + e.getMessage());
             throw new IOException("Error writing string tag: " + e.getMessage(), e);
@@ -452,35 +850,479 @@ public class XGBCNetClient implements SerialReader.SerialReaderObserver, TCPRead
     }
 
 
-    public synchronized Response writeBit(Tag tag, boolean flag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
+    public CompletableFuture<Response> writeStringAsync(Tag tag, String strData, int theLimitToWrite) {
+        return writeRequestAsync(lift(() -> protocolHandler.buildWriteStringRequest(tag, strData, theLimitToWrite)));
+    }
+
+
+    public Response writeBit(Tag tag, boolean flag) throws IOException, NoAcknowledgeMessageFromThePLCException, NoResponseException, FrameCheckException {
         try {
-            Object request = protocolHandler.buildWriteBitRequest(tag, flag);
-            Object response = sendRequestFrameGeneric(request);
+            return await(writeBitAsync(tag, flag));
+        } catch (Exception e) {
+            logger.severe("Error writing bit tag: " + e.getMessage());
+            throw new IOException("Error writing bit tag: " + e.getMessage(), e);
+        }
+    }
 
-            // Update tag value on success
-            String value = flag ? "01" : "00";
-            tag.setValueAsHexString(value);
 
+    public CompletableFuture<Response> writeBitAsync(Tag tag, boolean flag) {
+        return writeRequestAsync(lift(() -> protocolHandler.buildWriteBitRequest(tag, flag)))
+                .thenApply(response -> {
+                    // Update tag value on success
+                    String value = flag ? "01" : "00";
+                    tag.setValueAsHexString(value);
+                    return response;
+                });
+    }
+
+
+    private CompletableFuture<Response> writeRequestAsync(CompletableFuture<Object> builtRequest) {
+        return sendRequestFrameGenericAsync(builtRequest).thenApply(response -> {
             // For Cnet compatibility, return ResponseEvaluator response
             if (connection.isBinaryProtocol()) {
                 // FENet - create a simple ACK response
                 return new AckResponse();
+            }
+            // Cnet - use existing logic
+            ResponseEvaluator re = new ResponseEvaluator((String) response);
+            return re.getResponse();
+        });
+    }
+
+
+    /**
+     * Removes every monitoring group except the pinned ones (see {@link #setRegistrationGroupPinned(String, boolean)}).
+     */
+    public void clearRegisteredDevices() {
+        registrationLock.lock();
+        try {
+            for (Integer regNumber : new ArrayList<>(regNumbersAndDevices.keySet())) {
+                if (!slotManager.isPinned(regNumber)) {
+                    regNumbersAndDevices.remove(regNumber);
+                    executeFrames.remove(regNumber);
+                    plannedGroups.remove(regNumber);
+                    slotManager.release(regNumber);
+                }
+            }
+        } finally {
+            registrationLock.unlock();
+        }
+    }
+
+
+    /**
+     * A pinned group keeps its Cnet registration numbers and survives {@link #clearRegisteredDevices()}.
+     * Group 9 is pinned by default.
+     */
+    public void setRegistrationGroupPinned(String registrationNumber, boolean pinned) {
+        int regNumber = Integer.parseInt(XGBCNetUtil.addZeroIfNeed(registrationNumber));
+        registrationLock.lock();
+        try {
+            slotManager.setPinned(regNumber, pinned);
+        } finally {
+            registrationLock.unlock();
+        }
+    }
+
+
+    public boolean isRegistrationGroupPinned(String registrationNumber) {
+        int regNumber = Integer.parseInt(XGBCNetUtil.addZeroIfNeed(registrationNumber));
+        registrationLock.lock();
+        try {
+            return slotManager.isPinned(regNumber);
+        } finally {
+            registrationLock.unlock();
+        }
+    }
+
+
+    /**
+     * Cnet registration counters: resident groups (least recently read first), reads of resident groups,
+     * registrations and evictions.
+     */
+    public Map<String, Object> getRegistrationStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        registrationLock.lock();
+        try {
+            stats.put("residentGroups", slotManager.getResidentGroups());
+            stats.put("hits", slotManager.getHitCount());
+            stats.put("registrations", slotManager.getRegistrationCount());
+            stats.put("evictions", slotManager.getEvictionCount());
+        } finally {
+            registrationLock.unlock();
+        }
+        return stats;
+    }
+
+
+    public boolean isReadPlanning() {
+        return readPlanning;
+    }
+
+
+    /**
+     * Reads monitoring groups registered from now on with continuous reads of merged address ranges
+     * (see {@link ReadPlanner}). Disabled by default.
+     */
+    public void setReadPlanning(boolean readPlanning) {
+        this.readPlanning = readPlanning;
+    }
+
+
+    public int getReadPlanGapTolerance() {
+        return readPlanGapTolerance;
+    }
+
+
+    /**
+     * @param words unused words that may be read between two tags to keep them in one range
+     */
+    public void setReadPlanGapTolerance(int words) {
+        if (words < 0) {
+            throw new IllegalArgumentException("Gap tolerance must not be negative: " + words);
+        }
+        this.readPlanGapTolerance = words;
+    }
+
+
+    public boolean isAutoReconnect() {
+        return autoReconnect;
+    }
+
+
+    /**
+     * Enables reconnecting with exponential backoff when the link drops (enabled by default).
+     * Pending reads are sent again after the reconnect, pending writes fail at once.
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+
+    /**
+     * @param initialDelayMs wait before the second reconnect attempt (the first one is immediate)
+     * @param maxDelayMs     upper limit of the doubling delay between attempts
+     */
+    public void setReconnectBackoff(long initialDelayMs, long maxDelayMs) {
+        if (initialDelayMs < 1 || maxDelayMs < initialDelayMs) {
+            throw new IllegalArgumentException("Invalid reconnect backoff: " + initialDelayMs + "-" + maxDelayMs + " ms");
+        }
+        this.reconnectInitialDelayMs = initialDelayMs;
+        this.reconnectMaxDelayMs = maxDelayMs;
+    }
+
+
+    public boolean isReconnecting() {
+        return reconnecting.get();
+    }
+
+
+    /**
+     * Waits until the connection is up again, if a reconnect is in progress.
+     *
+     * @return true if connected
+     */
+    public boolean awaitConnected(long timeoutMs) throws InterruptedException {
+        if (isConnected()) {
+            return true;
+        }
+        if (!reconnecting.get() || timeoutMs <= 0) {
+            return false;
+        }
+        try {
+            reconnected.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Süre doldu, bağlantı durumu aşağıda kontrol edilir
+        }
+        return isConnected();
+    }
+
+
+    @Override
+    public void onConnectionLost(Throwable cause) {
+        if (disconnectRequested) {
+            return;
+        }
+        logger.warning("PLC bağlantısı koptu: " + cause.getMessage());
+        for (Map.Entry<String, InFlightRequest> pending : inFlight.entrySet()) {
+            InFlightRequest entry = pending.getValue();
+            if (!inFlight.remove(pending.getKey(), entry)) {
+                continue;
+            }
+            if (autoReconnect && entry.idempotent) {
+                entry.replayDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIMEOUT_MS);
+                replayQueue.add(entry);
             } else {
-                // Cnet - use existing logic
-                ResponseEvaluator re = new ResponseEvaluator((String) response);
-                return re.getResponse();
+                // Yazma isteği PLC'ye ulaşmış olabilir, tekrar gönderilmez
+                entry.result.completeExceptionally(new IOException("Bağlantı koptu, istek tamamlanamadı", cause));
+            }
+        }
+        if (autoReconnect) {
+            scheduleReconnect();
+        }
+    }
+
+
+    private void scheduleReconnect() {
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        if (!reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        reconnected = signal;
+        reconnectExecutor.schedule(this::expireReplays, RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        reconnectExecutor.execute(() -> reconnectAttempt(reconnectInitialDelayMs)); // İlk deneme hemen
+    }
+
+
+    private void reconnectAttempt(long nextDelayMs) {
+        if (disconnectRequested) {
+            reconnecting.set(false);
+            reconnected.complete(null);
+            return;
+        }
+        try {
+            Connection lost = connection;
+            if (lost != null) {
+                lost.disconnect();
+            }
+            Connection fresh = ConnectionFactory.createConnection(connectionParams, this);
+            if (fresh.connect()) {
+                // Bağlantı görünür olmadan önce kapı kapanır, yeni istekler geri yüklemeyle çakışmaz
+                CompletableFuture<Void> restored = new CompletableFuture<>();
+                sessionRestored = restored;
+                connection = fresh;
+                logger.info("PLC bağlantısı yeniden kuruldu");
+                CompletableFuture<Void> signal = reconnected;
+                CompletableFuture<Void> restore;
+                try {
+                    restore = restoreSession();
+                } catch (RuntimeException e) {
+                    restore = CompletableFuture.failedFuture(e);
+                }
+                restore.whenComplete((v, e) -> {
+                    if (e != null) {
+                        logger.log(Level.WARNING, "Oturum geri yüklenemedi", e);
+                    }
+                    restored.complete(null);
+                    signal.complete(null);
+                });
+                reconnecting.set(false);
+                return;
             }
         } catch (Exception e) {
-            logger.severe("Error writing bit tag: " + e.getMessage());
-            throw new IOException("Error writing bit tag: " + e.getMessage(), e);
+            logger.fine("Yeniden bağlanma denemesi başarısız: " + e.getMessage());
         }
+        long delay = Math.min(nextDelayMs, reconnectMaxDelayMs);
+        reconnectExecutor.schedule(() -> reconnectAttempt(Math.min(delay * 2, reconnectMaxDelayMs)), delay, TimeUnit.MILLISECONDS);
     }
 
 
-    public void clearRegisteredDevices() {
-        ArrayList<Tag> tags = (ArrayList<Tag>) regNumbersAndDevices.get(9);
-        regNumbersAndDevices.clear();
-        regNumbersAndDevices.put(9, tags);
+    /**
+     * Registers the Cnet monitoring groups again and resends the reads that were waiting for a response.
+     * Queued Cnet exchanges wait for {@link #sessionRestored}, so nothing else is on the line meanwhile.
+     * The registration lock is held only while the leases are read and the first frame is queued; the
+     * frames are sent one after another as their responses arrive.
+     */
+    private CompletableFuture<Void> restoreSession() {
+        CompletableFuture<Void> registered = CompletableFuture.completedFuture(null);
+        if (!connection.isBinaryProtocol()) {
+            // Yalnızca PLC'de yerleşik gruplar yeniden kaydedilir, diğerleri ilk okumalarında kaydedilir
+            registrationLock.lock();
+            try {
+                for (Integer regNumber : slotManager.getResidentGroups()) {
+                    List<SubFrame> group = executeFrames.get(regNumber);
+                    RegistrationSlotManager.Lease lease = slotManager.leaseOf(regNumber);
+                    if (group == null || lease == null || group.size() != lease.getFrameCount()) {
+                        slotManager.release(regNumber);
+                        continue;
+                    }
+                    List<Object> requests = new ArrayList<>(group.size());
+                    try {
+                        for (int i = 0; i < group.size(); i++) {
+                            requests.add(protocolHandler.buildRegisterRequest(group.get(i).tags, slotText(lease.getSlot(i))));
+                        }
+                    } catch (IOException e) {
+                        slotManager.release(regNumber);
+                        logger.warning("Kayit grubu yeniden kaydedilemedi: " + regNumber);
+                        continue;
+                    }
+                    registered = registered.thenCompose(v -> reregister(regNumber, lease, requests));
+                }
+            } finally {
+                registrationLock.unlock();
+            }
+        }
+        return registered.thenRun(() -> {
+            InFlightRequest entry;
+            while ((entry = replayQueue.poll()) != null) {
+                if (System.nanoTime() - entry.replayDeadline > 0) {
+                    entry.result.completeExceptionally(new NoResponseException());
+                } else {
+                    send(entry);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Sends the X frames of one group in order. If the PLC rejects one, the group's numbers are released
+     * and it is registered again on its next read; the future completes normally either way.
+     */
+    private CompletableFuture<Void> reregister(int regNumber, RegistrationSlotManager.Lease lease, List<Object> requests) {
+        CompletableFuture<Object> sent = CompletableFuture.completedFuture(null);
+        for (Object request : requests) {
+            sent = sent.thenCompose(r -> validated(transmit(request)));
+        }
+        return sent.handle((r, e) -> {
+            if (e == null) {
+                logger.info(regNumber + " kayit grubu yeniden kaydedildi");
+            } else {
+                releaseRegistration(regNumber, lease);
+                logger.warning("Kayit grubu yeniden kaydedilemedi: " + regNumber);
+            }
+            return null;
+        });
+    }
+
+
+    private void expireReplays() {
+        long now = System.nanoTime();
+        replayQueue.removeIf(entry -> {
+            if (now - entry.replayDeadline > 0) {
+                entry.result.completeExceptionally(new NoResponseException());
+                return true;
+            }
+            return false;
+        });
+        if (!replayQueue.isEmpty()) {
+            reconnectExecutor.schedule(this::expireReplays, RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    private void failReplays(Throwable error) {
+        InFlightRequest entry;
+        while ((entry = replayQueue.poll()) != null) {
+            entry.result.completeExceptionally(error);
+        }
+    }
+
+
+    /**
+     * Read plan of a monitoring group with its requests. The requests are compiled again when the
+     * protocol handler changes on connect.
+     */
+    private static final class PlannedGroup {
+        private final ReadPlanner.ReadPlan plan;
+        private final List<SubFrame> individualFrames;
+        private final long[][] lastWords;
+        private volatile ProtocolHandler compiledFor;
+        private volatile List<CompiledRequest> requests;
+
+
+        private PlannedGroup(ReadPlanner.ReadPlan plan, List<SubFrame> individualFrames) {
+            this.plan = plan;
+            this.individualFrames = individualFrames;
+            this.lastWords = new long[plan.getRanges().size()][];
+        }
+
+
+        /**
+         * Stores the words of the range and returns those of its previous read, or null
+         */
+        private synchronized long[] swapLastWords(int range, long[] words) {
+            long[] previous = lastWords[range];
+            lastWords[range] = words;
+            return previous;
+        }
+
+
+        /**
+         * One request per range
+         */
+        private List<CompiledRequest> requestsFor(ProtocolHandler handler) {
+            List<CompiledRequest> current = requests;
+            if (current == null || compiledFor != handler) {
+                current = new ArrayList<>();
+                for (ReadPlanner.Range range : plan.getRanges()) {
+                    current.add(handler.compileRangeReadRequest(range));
+                }
+                requests = current;
+                compiledFor = handler;
+            }
+            return current;
+        }
+    }
+
+
+    /**
+     * Part of a monitoring group that fits into one frame. On Cnet it is registered under its own number,
+     * which may change when the group is evicted and registered again. The request is compiled again
+     * when the protocol handler or the number changes.
+     */
+    private static final class SubFrame {
+        private final List<Tag> tags;
+        private volatile Compiled compiled;
+        private Object lastData;
+
+
+        private SubFrame(List<Tag> tags) {
+            this.tags = tags;
+        }
+
+
+        /**
+         * Stores the data of the latest response (Cnet String, FENet data bytes) and returns the previous one,
+         * or null. Unchanged blocks are recognised by comparing the two.
+         */
+        private synchronized Object swapLastData(Object data) {
+            Object previous = lastData;
+            lastData = data;
+            return previous;
+        }
+
+
+        private CompiledRequest requestFor(ProtocolHandler handler, int slot) {
+            Compiled current = compiled;
+            if (current == null || current.handler != handler || current.slot != slot) {
+                current = new Compiled(handler, slot, handler.compileExecuteRequest(tags, slotText(slot)));
+                compiled = current;
+            }
+            return current.request;
+        }
+
+
+        private static final class Compiled {
+            private final ProtocolHandler handler;
+            private final int slot;
+            private final CompiledRequest request;
+
+
+            private Compiled(ProtocolHandler handler, int slot, CompiledRequest request) {
+                this.handler = handler;
+                this.slot = slot;
+                this.request = request;
+            }
+        }
+    }
+
+
+    /**
+     * A request that was sent and waits for its response.
+     */
+    private static final class InFlightRequest {
+        private final Object request;
+        private final boolean idempotent;
+        private final CompletableFuture<Object> result;
+        private volatile long replayDeadline;
+
+
+        private InFlightRequest(Object request, boolean idempotent, CompletableFuture<Object> result) {
+            this.request = request;
+            this.idempotent = idempotent;
+            this.result = result;
+        }
     }
 
 
@@ -0,0 +1,146 @@
+package tr.com.logidex.cnetdedicated.device;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which changes of a numeric tag are worth notifying. The new value is compared with the last
+ * notified value, not with the previous scan, so a slow drift is reported once it adds up. Instances are
+ * immutable and can be shared between tags.
+ */
+public final class Deadband {
+    /**
+     * Every change is notified
+     */
+    public static final Deadband NONE = new Deadband(Type.NONE, 0, 0, 0);
+    /**
+     * Filter used before deadbands were configurable: a change under 1 that is also under 1 percent is ignored
+     */
+    public static final Deadband DEFAULT = new Deadband(Type.ABSOLUTE_OR_PERCENT, 1.0, 1.0, 0);
+    private final Type type;
+    private final double absolute;
+    private final double percent;
+    private final long minIntervalNanos;
+
+
+    private Deadband(Type type, double absolute, double percent, long minIntervalNanos) {
+        this.type = type;
+        this.absolute = absolute;
+        this.percent = percent;
+        this.minIntervalNanos = minIntervalNanos;
+    }
+
+
+    /**
+     * Notifies once the value moved at least {@code threshold} (in display units, after the multiplier)
+     */
+    public static Deadband absolute(double threshold) {
+        return new Deadband(Type.ABSOLUTE, requireNonNegative(threshold), 0, 0);
+    }
+
+
+    /**
+     * Notifies once the value moved at least {@code percent} percent of the last notified value.
+     * Any change away from zero is notified.
+     */
+    public static Deadband percent(double percent) {
+        return new Deadband(Type.PERCENT, 0, requireNonNegative(percent), 0);
+    }
+
+
+    /**
+     * Notifies once either limit is reached; {@link #DEFAULT} is {@code absoluteOrPercent(1, 1)}.
+     * Like the old filter, a change away from zero has to reach the absolute limit.
+     */
+    public static Deadband absoluteOrPercent(double threshold, double percent) {
+        return new Deadband(Type.ABSOLUTE_OR_PERCENT, requireNonNegative(threshold), requireNonNegative(percent), 0);
+    }
+
+
+    /**
+     * Notifies every change, but at most once per interval. A change inside the interval is delayed
+     * until it ends, so the last value is always notified.
+     */
+    public static Deadband minInterval(long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval must not be negative: " + interval);
+        }
+        return new Deadband(Type.MIN_INTERVAL, 0, 0, unit.toNanos(interval));
+    }
+
+
+    private static double requireNonNegative(double value) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException("Deadband limit must not be negative: " + value);
+        }
+        return value;
+    }
+
+
+    /**
+     * Whether the change from the last notified value is large enough. Time is not considered here,
+     * see {@link #getMinIntervalNanos()}.
+     *
+     * @param reference last notified value
+     * @param value     current value
+     */
+    public boolean isSignificant(double reference, double value) {
+        if (Double.compare(reference, value) == 0) {
+            return false;
+        }
+        double delta = Math.abs(value - reference);
+        if (Double.isNaN(delta)) {
+            return true; // NaN'a giriş ve çıkış her zaman bildirilir
+        }
+        switch (type) {
+            case ABSOLUTE:
+                return delta >= absolute;
+            case PERCENT:
+                return reference == 0 || delta >= Math.abs(reference) * percent / 100;
+            case ABSOLUTE_OR_PERCENT:
+                return delta >= absolute || (reference != 0 && delta >= Math.abs(reference) * percent / 100);
+            case NONE:
+            case MIN_INTERVAL:
+            default:
+                return true;
+        }
+    }
+
+
+    public Type getType() {
+        return type;
+    }
+
+
+    /**
+     * Shortest time between two notifications, 0 unless the type is {@link Type#MIN_INTERVAL}
+     */
+    public long getMinIntervalNanos() {
+        return minIntervalNanos;
+    }
+
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case ABSOLUTE:
+                return "Deadband{absolute=" + absolute + "}";
+            case PERCENT:
+                return "Deadband{percent=" + percent + "}";
+            case ABSOLUTE_OR_PERCENT:
+                return "Deadband{absolute=" + absolute + ", percent=" + percent + "}";
+            case MIN_INTERVAL:
+                return "Deadband{minInterval=" + TimeUnit.NANOSECONDS.toMillis(minIntervalNanos) + "ms}";
+            default:
+                return "Deadband{none}";
+        }
+    }
+
+
+    public enum Type {
+        NONE,
+        ABSOLUTE,
+        PERCENT,
+        ABSOLUTE_OR_PERCENT,
+        MIN_INTERVAL
+    }
+}
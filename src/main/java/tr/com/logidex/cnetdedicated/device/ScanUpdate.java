@@ -0,0 +1,85 @@
+package tr.com.logidex.cnetdedicated.device;
+
+import java.util.Arrays;
+
+/**
+ * Values of one monitoring read, collected while the responses of its frames arrive and written to the
+ * {@link TagTable} in one step, so that snapshot readers never see half of a scan. Listeners of the
+ * changed tags are notified after the table is unlocked. One instance serves one scan.
+ */
+public final class ScanUpdate {
+    private Tag[] tags;
+    private long[] values;
+    private byte[] hexDigits;
+    private int size;
+
+
+    public ScanUpdate(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        tags = new Tag[capacity];
+        values = new long[capacity];
+        hexDigits = new byte[capacity];
+    }
+
+
+    /**
+     * Adds a decoded value; may be called from several reader threads.
+     */
+    public synchronized void add(Tag tag, long rawValue, int digits) {
+        if (size == tags.length) {
+            int capacity = size * 2;
+            tags = Arrays.copyOf(tags, capacity);
+            values = Arrays.copyOf(values, capacity);
+            hexDigits = Arrays.copyOf(hexDigits, capacity);
+        }
+        tags[size] = tag;
+        values[size] = rawValue;
+        hexDigits[size] = (byte) digits;
+        size++;
+    }
+
+
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     * Writes the collected values, holding the write lock of each table once, then notifies the
+     * listeners of the tags whose value changed. Called once, after the last {@link #add}.
+     */
+    public void publish() {
+        Tag[] published;
+        boolean[] changedFlags;
+        int count;
+        synchronized (this) {
+            count = size;
+            published = tags;
+            changedFlags = new boolean[count];
+            boolean[] done = new boolean[count];
+            for (int first = 0; first < count; first++) {
+                if (done[first]) {
+                    continue;
+                }
+                // Genelde tek tablo vardır, her tablo için kilit bir kez alınır
+                TagTable table = published[first].getTable();
+                long stamp = table.lockPublish();
+                try {
+                    for (int i = first; i < count; i++) {
+                        if (!done[i] && published[i].getTable() == table) {
+                            changedFlags[i] = published[i].applyRawValue(values[i], hexDigits[i]);
+                            done[i] = true;
+                        }
+                    }
+                } finally {
+                    table.unlockPublish(stamp);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (changedFlags[i]) {
+                published[i].fireValueChanged();
+            }
+        }
+    }
+}
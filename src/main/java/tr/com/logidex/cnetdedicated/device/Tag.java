@@ -1,25 +1,45 @@
 package tr.com.logidex.cnetdedicated.device;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import javafx.beans.property.StringPropertyBase;
+import javafx.beans.value.ObservableValue;
 import tr.com.logidex.cnetdedicated.util.XGBCNetUtil;
 
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+/**
+ * Handle of one PLC variable. The value itself is stored in a {@link TagTable} under {@link #getId()};
+ * the JavaFX properties are created only when somebody asks for them.
+ */
 public class Tag {
     private final String name;
-    private final StringProperty value = new SimpleStringProperty("0");
+    private final TagTable table;
+    private final int id;
+    private volatile DisplayValueProperty value;
+    private volatile SimpleBooleanProperty dontUpdate;
     private Device device;
     private DataType dataType;
     private String address;
-    private String valueAsHexString;
     private DisplayFormat displayFormat = DisplayFormat.SIGNED_INT;
     private boolean numericTag;
     private int multiplier = 1;
-    private SimpleBooleanProperty dontUpdate = new SimpleBooleanProperty();
+    private volatile Deadband deadband = Deadband.DEFAULT;
+    private byte[] variableNameBytes;
 
 
     public Tag(String name, Device device, DataType dataType, String addr, DisplayFormat displayFormat, Integer multiplier) {
+        this(name, device, dataType, addr, displayFormat, multiplier, TagTable.getDefault());
+    }
+
+
+    /**
+     * @param table value store of the tag, e.g. a separate table per PLC
+     */
+    public Tag(String name, Device device, DataType dataType, String addr, DisplayFormat displayFormat, Integer multiplier, TagTable table) {
         this.name = name;
+        this.table = table;
+        this.id = table.allocate();
         this.device = device;
         this.dataType = dataType;
         this.address = addr;
@@ -58,7 +78,67 @@ public class Tag {
 
 
     public StringProperty valueProperty() {
-        return value;
+        DisplayValueProperty property = value;
+        if (property == null) {
+            synchronized (this) {
+                property = value;
+                if (property == null) {
+                    property = new DisplayValueProperty();
+                    value = property;
+                }
+            }
+        }
+        return property;
+    }
+
+
+    /**
+     * Dense index of the tag in its {@link TagTable}
+     */
+    public int getId() {
+        return id;
+    }
+
+
+    public TagTable getTable() {
+        return table;
+    }
+
+
+    /**
+     * Incremented on every change of the value
+     */
+    public int getVersion() {
+        return table.getVersion(id);
+    }
+
+
+    /**
+     * One of the {@code TagTable.QUALITY_} constants
+     */
+    public byte getQuality() {
+        return table.getQuality(id);
+    }
+
+
+    public void setQuality(byte quality) {
+        table.setQuality(id, quality);
+    }
+
+
+    /**
+     * See {@link TagTable#isCurrent(int)}
+     */
+    public boolean isCurrent() {
+        return table.isCurrent(id);
+    }
+
+
+    /**
+     * Returns the id to the table. Call it only when the tag is discarded for good.
+     */
+    public void release() {
+        table.release(id);
     }
 
 
@@ -72,6 +152,11 @@ public class Tag {
     }
 
 
+    public String getAddress() {
+        return address;
+    }
+
+
     public DisplayFormat getDisplayFormat() {
         return displayFormat;
     }
@@ -87,29 +172,23 @@ public class Tag {
     }
 
 
-    private void toStr(String valueAsHexString) {
+    private static String toStr(String valueAsHexString) {
         BigInteger bigInteger = new BigInteger(valueAsHexString, 16);
-        value.set(new String(bigInteger.toByteArray()).trim());
+        return new String(bigInteger.toByteArray()).trim();
     }
 
 
-    private void toBinary(String valueAsHexString) {
+    private String toBinary(long raw) {
         if (dataType == DataType.Bit) {
-            int v = Integer.parseInt(valueAsHexString, 16);
-            String binaryString = Integer.toBinaryString(v);
-            value.set(binaryString);
+            return Integer.toBinaryString((int) raw);
         }
         if (dataType == DataType.Word) {
-            int v = Integer.parseInt(valueAsHexString, 16);
-            String binaryString = Integer.toBinaryString(v);
-            value.set(String.valueOf(XGBCNetUtil.addZeroToStart(16, binaryString)));
+            return XGBCNetUtil.addZeroToStart(16, Integer.toBinaryString((int) raw));
         }
         if (dataType == DataType.Dword) {
-            int v = (int) Long.parseLong(valueAsHexString, 16);
-            String binaryString = Integer.toBinaryString(v);
-            ;
-            value.set(String.valueOf(XGBCNetUtil.addZeroToStart(32, binaryString)));
+            return XGBCNetUtil.addZeroToStart(32, Integer.toBinaryString((int) raw));
         }
+        return null;
     }
 
 
@@ -158,68 +237,164 @@ public class Tag {
     }
 
 
-    private void toFloat(String valueAsHexString) {
-        int intValue = (int) Long.parseLong(valueAsHexString, 16);
-        float floatValue = Float.intBitsToFloat(intValue);
-        value.set(String.valueOf(floatValue / multiplier));
+    /**
+     * Display text of the stored value, or null if the format does not apply to the data type
+     */
+    private String formatRawValue() {
+        if (displayFormat == DisplayFormat.STRING) {
+            String hex = table.getText(id);
+            return hex == null ? null : toStr(hex);
+        }
+        if (!hasRawValue()) {
+            return null;
+        }
+        switch (displayFormat) {
+            case SIGNED_INT:
+            case UNSIGNED_INT:
+                return dataType == DataType.Word || dataType == DataType.Dword ? String.valueOf(getLongValue()) : null;
+            case FLOAT:
+                return String.valueOf(getFloatValue());
+            case BINARY:
+                return toBinary(getRawValue());
+            default:
+                return null;
+        }
     }
 
 
-    private void toUnSignedInt(String valueAsHexString) {
-        if (dataType == DataType.Word) {
-            int v = Integer.parseInt(valueAsHexString, 16);
-            value.set(String.valueOf(v / multiplier));
+    public String getValue() {
+        DisplayValueProperty property = value;
+        if (property != null) {
+            return property.get();
         }
-        if (dataType == DataType.Dword) {
-            long v = Long.parseLong(valueAsHexString, 16);
-            value.set(String.valueOf(v / multiplier));
+        String formatted = formatRawValue();
+        return formatted != null ? formatted : "0";
+    }
+
+
+    public String getValueAsHexString() {
+        if (displayFormat == DisplayFormat.STRING) {
+            return table.getText(id);
         }
+        int digits = table.getHexDigits(id);
+        return digits > 0 ? TagCodec.toHex(table.getRawValue(id), digits) : null;
     }
 
 
-    private void toSignedInt(String valueAsHexString) {
-        if (dataType == DataType.Word) {
-            short signedShortValue = (short) Integer.parseInt(valueAsHexString, 16);
-            value.set(String.valueOf(signedShortValue / multiplier));
+    public void setValueAsHexString(String valueAsHexString) {
+        if (displayFormat == DisplayFormat.STRING) {
+            // Metin ham sayıya sığmaz, tabloda ayrı tutulur
+            if (table.setText(id, valueAsHexString)) {
+                fireValueChanged();
+            }
+            return;
         }
-        if (dataType == DataType.Dword) {
-            int signedintValue = (int) Long.parseLong(valueAsHexString, 16);
-            value.set(String.valueOf(signedintValue / multiplier));
+        setRawValue(TagCodec.parseHex(valueAsHexString, 0, valueAsHexString.length()), valueAsHexString.length());
+    }
+
+
+    /**
+     * Stores a value decoded from the response (see {@link TagCodec}). The display text and the hex text
+     * are built only when they are read, and an unchanged value costs nothing.
+     *
+     * @param rawValue  value bits, right aligned (0..0xFFFF for a word)
+     * @param hexDigits width of the value in hex digits, used by {@link #getValueAsHexString()}
+     */
+    public void setRawValue(long rawValue, int hexDigits) {
+        if (displayFormat == DisplayFormat.STRING) {
+            setValueAsHexString(TagCodec.toHex(rawValue, hexDigits));
+            return;
+        }
+        if (table.setRawValue(id, rawValue, hexDigits)) {
+            fireValueChanged();
         }
     }
 
 
-    public String getValue() {
-        return value.getValue();
+    /**
+     * Stores the value while the caller holds the write lock of the table (see {@link ScanUpdate})
+     *
+     * @return true if the value changed and the listeners must be notified
+     */
+    boolean applyRawValue(long rawValue, int hexDigits) {
+        if (displayFormat == DisplayFormat.STRING) {
+            return table.putText(id, TagCodec.toHex(rawValue, hexDigits));
+        }
+        return table.putRawValue(id, rawValue, hexDigits);
     }
 
 
-    public String getValueAsHexString() {
-        return valueAsHexString;
+    void fireValueChanged() {
+        DisplayValueProperty property = value;
+        if (property != null) {
+            property.rawValueChanged();
+        }
     }
 
 
-    public void setValueAsHexString(String valueAsHexString) {
-        this.valueAsHexString = valueAsHexString;
-        switch (displayFormat) {
-            case SIGNED_INT:
-                toSignedInt(valueAsHexString);
-                break;
-            case UNSIGNED_INT:
-                toUnSignedInt(valueAsHexString);
-                break;
-            case FLOAT:
-                toFloat(valueAsHexString);
-                break;
-            case BINARY:
-                toBinary(valueAsHexString);
-                break;
-            case STRING:
-                toStr(valueAsHexString);
-                break;
-            default:
-                break;
+    /**
+     * Whether a numeric value was read or written since the tag was created
+     */
+    public boolean hasRawValue() {
+        return table.getHexDigits(id) > 0;
+    }
+
+
+    /**
+     * Value bits as received from the PLC, without sign or multiplier
+     */
+    public long getRawValue() {
+        return table.getRawValue(id);
+    }
+
+
+    /**
+     * Integer value as displayed: signed or unsigned according to the display format, divided by the multiplier
+     */
+    public long getLongValue() {
+        return toLongValue(table.getRawValue(id));
+    }
+
+
+    /**
+     * Float value of a {@link DisplayFormat#FLOAT} tag divided by the multiplier
+     */
+    public float getFloatValue() {
+        return toFloatValue(table.getRawValue(id));
+    }
+
+
+    /**
+     * Numeric value as displayed, for comparisons and scaling without parsing the display text
+     */
+    public double getDoubleValue() {
+        return toDoubleValue(table.getRawValue(id));
+    }
+
+
+    private long toLongValue(long rawValue) {
+        long v;
+        if (dataType == DataType.Word) {
+            v = displayFormat == DisplayFormat.SIGNED_INT ? (short) rawValue : rawValue & 0xFFFF;
+        } else if (dataType == DataType.Dword) {
+            v = displayFormat == DisplayFormat.SIGNED_INT ? (int) rawValue : rawValue & 0xFFFFFFFFL;
+        } else {
+            v = rawValue;
         }
+        return v / multiplier;
+    }
+
+
+    private float toFloatValue(long rawValue) {
+        return Float.intBitsToFloat((int) rawValue) / multiplier;
+    }
+
+
+    /**
+     * Numeric value of the given raw bits, e.g. of a value taken from a {@link TagSnapshot}
+     */
+    double toDoubleValue(long rawValue) {
+        return displayFormat == DisplayFormat.FLOAT ? toFloatValue(rawValue) : toLongValue(rawValue);
     }
 
 
@@ -228,14 +403,60 @@ public class Tag {
     }
 
 
+    /**
+     * Which value changes of a numeric tag are notified to the listeners of a TagRegistry
+     */
+    public Deadband getDeadband() {
+        return deadband;
+    }
+
+
+    public void setDeadband(Deadband deadband) {
+        this.deadband = Objects.requireNonNull(deadband, "deadband");
+    }
+
+
     public String formatToRequest() {
         String len = XGBCNetUtil.addZeroIfNeed(this.toString().length() + 1); // +1 for sign %
         return new String(len + "%" + this.toString());
     }
 
 
+    /**
+     * ASCII bytes of the direct variable name (e.g. {@code %MW100}), built once because device,
+     * data type and address never change. Callers must not modify the returned array.
+     */
+    public byte[] getVariableNameBytes() {
+        byte[] bytes = variableNameBytes;
+        if (bytes == null) {
+            bytes = ("%" + this).getBytes(StandardCharsets.US_ASCII);
+            variableNameBytes = bytes;
+        }
+        return bytes;
+    }
+
+
     public SimpleBooleanProperty dontUpdateProperty() {
-        return dontUpdate;
+        SimpleBooleanProperty property = dontUpdate;
+        if (property == null) {
+            synchronized (this) {
+                property = dontUpdate;
+                if (property == null) {
+                    property = new SimpleBooleanProperty(table.isPaused(id));
+                    property.addListener((obs, oldValue, paused) -> table.setPaused(id, paused));
+                    dontUpdate = property;
+                }
+            }
+        }
+        return property;
+    }
+
+
+    /**
+     * Whether PLC reads currently leave the value alone (e.g. while the user edits it)
+     */
+    public boolean isUpdatePaused() {
+        return table.isPaused(id);
     }
 
 
@@ -250,11 +471,78 @@ public class Tag {
 
 
     public void pauseUpdating() {
-        dontUpdate.set(true);
+        setUpdatePaused(true);
     }
 
 
     public void resumeUpdating() {
-        dontUpdate.set(false);
+        setUpdatePaused(false);
+    }
+
+
+    private void setUpdatePaused(boolean paused) {
+        table.setPaused(id, paused);
+        SimpleBooleanProperty property = dontUpdate;
+        if (property != null) {
+            property.set(paused);
+        }
+    }
+
+
+    /**
+     * Display text of the value. After a raw update only invalidation is fired; the text is formatted
+     * when somebody reads it, so a tag watched only by bindings of a hidden control is never formatted.
+     * Change listeners still read the new text and are called only if it differs.
+     */
+    private final class DisplayValueProperty extends StringPropertyBase {
+        private String display = "0";
+        private boolean stale = true;
+
+
+        @Override
+        public String get() {
+            if (stale) {
+                stale = false;
+                String formatted = formatRawValue();
+                if (formatted != null) {
+                    display = formatted;
+                }
+            }
+            return display;
+        }
+
+
+        @Override
+        public void set(String newValue) {
+            get();
+            if (!Objects.equals(display, newValue)) {
+                display = newValue;
+                fireValueChangedEvent();
+            }
+        }
+
+
+        private void rawValueChanged() {
+            stale = true;
+            fireValueChangedEvent();
+        }
+
+
+        @Override
+        public void bind(ObservableValue<? extends String> observable) {
+            throw new UnsupportedOperationException("Tag values are updated from the PLC");
+        }
+
+
+        @Override
+        public Object getBean() {
+            return Tag.this;
+        }
+
+
+        @Override
+        public String getName() {
+            return "value";
+        }
     }
 }
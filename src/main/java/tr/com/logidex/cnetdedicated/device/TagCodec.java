@@ -0,0 +1,78 @@
+package tr.com.logidex.cnetdedicated.device;
+
+/**
+ * Decodes PLC response data straight into the raw value of a {@link Tag}, without building a hex
+ * string per value. Cnet carries values as ASCII hex digits, FENet as little-endian bytes.
+ */
+public final class TagCodec {
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+
+    private TagCodec() {
+    }
+
+
+    /**
+     * Parses the ASCII hex digits in {@code [from, to)}, e.g. a word inside a Cnet frame.
+     *
+     * @throws NumberFormatException if the range is empty, longer than 16 digits or not hex
+     */
+    public static long parseHex(CharSequence text, int from, int to) {
+        if (to <= from || to - from > 16) {
+            throw new NumberFormatException("Invalid hex value length " + (to - from) + " in: " + text);
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(text.charAt(i), 16);
+            if (digit < 0) {
+                throw new NumberFormatException("Invalid hex value: " + text.subSequence(from, to));
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+
+    /**
+     * Reads {@code length} little-endian bytes (FENet byte order) starting at {@code offset}.
+     */
+    public static long decodeLittleEndian(byte[] data, int offset, int length) {
+        long value = 0;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            value = (value << 8) | (data[i] & 0xFF);
+        }
+        return value;
+    }
+
+
+    /**
+     * Upper case hex text of the value, zero padded to {@code digits}.
+     */
+    public static String toHex(long value, int digits) {
+        char[] text = new char[digits];
+        for (int i = digits - 1; i >= 0; i--) {
+            text[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(text);
+    }
+
+
+    /**
+     * Bytes one value of the data type occupies in a FENet response
+     */
+    public static int byteLength(DataType dataType) {
+        switch (dataType) {
+            case Bit:
+            case Byte:
+                return 1;
+            case Dword:
+                return 4;
+            case Lword:
+                return 8;
+            case Word:
+            default:
+                return 2;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package tr.com.logidex.cnetdedicated.device;
+
+/**
+ * Consistent copy of a {@link TagTable}, filled by {@link TagTable#capture(TagSnapshot)}. Every value in
+ * it belongs to the same set of completed scans. Keep one instance per reader and pass it back to
+ * {@code capture} to reuse its arrays.
+ * <p>
+ * Only the ids that existed at capture time are covered. Asking for a tag created later throws
+ * {@link IllegalArgumentException}; check {@link #contains(Tag)} first if that can happen.
+ */
+public final class TagSnapshot {
+    long[] values = new long[0];
+    int[] versions = new int[0];
+    byte[] quality = new byte[0];
+    private int size;
+    private long sequence;
+
+
+    void prepare(int size, long sequence) {
+        if (values.length < size) {
+            int capacity = Math.max(size, values.length + (values.length >> 1));
+            values = new long[capacity];
+            versions = new int[capacity];
+            quality = new byte[capacity];
+        }
+        this.size = size;
+        this.sequence = sequence;
+    }
+
+
+    /**
+     * {@link TagTable#getPublishSequence()} at the time of the copy; equal sequences mean equal contents
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    /**
+     * Number of tag ids covered by the copy
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Whether the id existed when the copy was taken
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < size;
+    }
+
+
+    public boolean contains(Tag tag) {
+        return contains(tag.getId());
+    }
+
+
+    public long getRawValue(int id) {
+        return values[index(id)];
+    }
+
+
+    public int getVersion(int id) {
+        return versions[index(id)];
+    }
+
+
+    public byte getQuality(int id) {
+        return quality[index(id)];
+    }
+
+
+    public long getRawValue(Tag tag) {
+        return getRawValue(tag.getId());
+    }
+
+
+    /**
+     * Value of the tag in this snapshot as {@link Tag#getDoubleValue()} would return it
+     */
+    public double getDoubleValue(Tag tag) {
+        return tag.toDoubleValue(getRawValue(tag.getId()));
+    }
+
+
+    public int getVersion(Tag tag) {
+        return getVersion(tag.getId());
+    }
+
+
+    public byte getQuality(Tag tag) {
+        return getQuality(tag.getId());
+    }
+
+
+    // Diziler yeniden kullanıldığı için size'ın ötesinde önceki kopyadan kalan değerler olabilir
+    private int index(int id) {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("Tag id " + id + " was not captured, snapshot covers " + size + " ids");
+        }
+        return id;
+    }
+}
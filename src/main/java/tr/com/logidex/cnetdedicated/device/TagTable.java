@@ -0,0 +1,327 @@
+package tr.com.logidex.cnetdedicated.device;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Columnar value store of the tags. Every {@link Tag} is a handle holding a dense id into this table;
+ * the values live in primitive columns (raw value, version, quality, width, flags) instead of in
+ * per-tag objects. Columns are split into fixed-size pages that never move, so a reader thread
+ * writing a value is never lost while another thread grows the table.
+ * <p>
+ * Text values ({@link DisplayFormat#STRING}) do not fit into a long and are kept in a side map.
+ * <p>
+ * Writes go through a {@link StampedLock}. A monitoring read is published as one {@link ScanUpdate}
+ * under a single write lock, and {@link #capture(TagSnapshot)} copies the columns with an optimistic
+ * read, so readers see complete scans without blocking the poller.
+ */
+public final class TagTable {
+    public static final byte QUALITY_UNKNOWN = 0;
+    public static final byte QUALITY_GOOD = 1;
+    public static final byte QUALITY_BAD = 2;
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS; // 4096 tag
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final byte FLAG_PAUSED = 1;
+    private static final byte FLAG_STALE = 2; // Değer son taramadan sonra tarama dışında değişti
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+    private static final TagTable DEFAULT = new TagTable();
+    private volatile Page[] pages = new Page[0];
+    private final Map<Integer, String> texts = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private volatile long publishSequence;
+    private volatile int highWater; // Kullanılmış en büyük id + 1
+    private int nextId;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+
+
+    /**
+     * Table used by tags created without an explicit table
+     */
+    public static TagTable getDefault() {
+        return DEFAULT;
+    }
+
+
+    /**
+     * Reserves an id, reusing released ones first.
+     */
+    public synchronized int allocate() {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            highWater = nextId;
+            int pageIndex = id >>> PAGE_BITS;
+            if (pageIndex >= pages.length) {
+                Page[] grown = Arrays.copyOf(pages, pageIndex + 1);
+                grown[pageIndex] = new Page();
+                pages = grown;
+            }
+        }
+        return id;
+    }
+
+
+    /**
+     * Returns the id for reuse. The tag that held it must not be used afterwards.
+     */
+    public synchronized void release(int id) {
+        Page page = page(id);
+        int i = id & PAGE_MASK;
+        long stamp = lock.writeLock();
+        try {
+            page.values[i] = 0;
+            page.versions[i] = 0;
+            page.quality[i] = QUALITY_UNKNOWN;
+            page.hexDigits[i] = 0;
+            page.flags[i] = 0;
+            texts.remove(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+
+    private Page page(int id) {
+        return pages[id >>> PAGE_BITS];
+    }
+
+
+    /**
+     * Stores a value read from the PLC and marks it good. The value was not set by a monitoring scan,
+     * so the next scan decodes the tag even if its response bytes did not change (see {@link #isCurrent}).
+     *
+     * @return true if the value or its width changed, in which case the version is incremented
+     */
+    public boolean setRawValue(int id, long value, int hexDigits) {
+        long stamp = lock.writeLock();
+        try {
+            boolean changed = putRawValue(id, value, hexDigits);
+            page(id).flags[id & PAGE_MASK] |= FLAG_STALE;
+            return changed;
+        } finally {
+            unlockPublish(stamp);
+        }
+    }
+
+
+    /**
+     * Caller holds the write lock
+     */
+    boolean putRawValue(int id, long value, int hexDigits) {
+        Page page = page(id);
+        int i = id & PAGE_MASK;
+        page.quality[i] = QUALITY_GOOD;
+        page.flags[i] &= ~FLAG_STALE;
+        if (page.values[i] == value && page.hexDigits[i] == hexDigits) {
+            return false;
+        }
+        page.values[i] = value;
+        page.hexDigits[i] = (byte) hexDigits;
+        page.versions[i]++;
+        return true;
+    }
+
+
+    long lockPublish() {
+        return lock.writeLock();
+    }
+
+
+    void unlockPublish(long stamp) {
+        publishSequence++; // Yalnızca yazma kilidi altında artar
+        lock.unlockWrite(stamp);
+    }
+
+
+    public long getRawValue(int id) {
+        return page(id).values[id & PAGE_MASK];
+    }
+
+
+    /**
+     * Width of the raw value in hex digits, 0 while no numeric value was stored
+     */
+    public int getHexDigits(int id) {
+        return page(id).hexDigits[id & PAGE_MASK];
+    }
+
+
+    /**
+     * Incremented on every change of the value
+     */
+    public int getVersion(int id) {
+        return page(id).versions[id & PAGE_MASK];
+    }
+
+
+    public byte getQuality(int id) {
+        return page(id).quality[id & PAGE_MASK];
+    }
+
+
+    public void setQuality(int id, byte quality) {
+        long stamp = lock.writeLock();
+        try {
+            page(id).quality[id & PAGE_MASK] = quality;
+        } finally {
+            unlockPublish(stamp);
+        }
+    }
+
+
+    public boolean isPaused(int id) {
+        return (page(id).flags[id & PAGE_MASK] & FLAG_PAUSED) != 0;
+    }
+
+
+    /**
+     * Resuming marks the value stale: scans skipped it while it was paused, so the PLC may hold another value
+     * even if the response bytes do not change any more.
+     */
+    public void setPaused(int id, boolean paused) {
+        Page page = page(id);
+        int i = id & PAGE_MASK;
+        long stamp = lock.writeLock();
+        try {
+            page.flags[i] = (byte) (paused ? page.flags[i] | FLAG_PAUSED : (page.flags[i] & ~FLAG_PAUSED) | FLAG_STALE);
+        } finally {
+            unlockPublish(stamp);
+        }
+    }
+
+
+    /**
+     * True if the stored value is the one of the last monitoring scan: good quality, not paused and not
+     * set from elsewhere since. Only then may a scan skip the tag because its response bytes did not change.
+     */
+    public boolean isCurrent(int id) {
+        Page page = page(id);
+        int i = id & PAGE_MASK;
+        return page.quality[i] == QUALITY_GOOD && (page.flags[i] & (FLAG_PAUSED | FLAG_STALE)) == 0;
+    }
+
+
+    /**
+     * Stores the hex text of a text value.
+     *
+     * @return true if the text changed
+     */
+    public boolean setText(int id, String hex) {
+        long stamp = lock.writeLock();
+        try {
+            boolean changed = putText(id, hex);
+            page(id).flags[id & PAGE_MASK] |= FLAG_STALE;
+            return changed;
+        } finally {
+            unlockPublish(stamp);
+        }
+    }
+
+
+    /**
+     * Caller holds the write lock
+     */
+    boolean putText(int id, String hex) {
+        Page page = page(id);
+        int i = id & PAGE_MASK;
+        page.quality[i] = QUALITY_GOOD;
+        page.flags[i] &= ~FLAG_STALE;
+        String previous = texts.put(id, hex);
+        if (hex.equals(previous)) {
+            return false;
+        }
+        page.hexDigits[i] = 0;
+        page.versions[i]++;
+        return true;
+    }
+
+
+    public String getText(int id) {
+        return texts.get(id);
+    }
+
+
+    /**
+     * Copies value, version and quality of every id into the snapshot. The copy is taken with an optimistic
+     * read and repeated if a scan was published meanwhile; only after a few collisions does it take the read
+     * lock, which delays the next publish by one copy. No allocation happens once the snapshot is large enough.
+     *
+     * @param into snapshot to fill, or null for a new one
+     * @return the filled snapshot
+     */
+    public TagSnapshot capture(TagSnapshot into) {
+        TagSnapshot snapshot = into != null ? into : new TagSnapshot();
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                copyInto(snapshot);
+                if (lock.validate(stamp)) {
+                    return snapshot;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = lock.readLock();
+        try {
+            copyInto(snapshot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return snapshot;
+    }
+
+
+    private void copyInto(TagSnapshot snapshot) {
+        Page[] current = pages;
+        int size = Math.min(highWater, current.length << PAGE_BITS);
+        snapshot.prepare(size, publishSequence);
+        for (int p = 0, from = 0; from < size; p++, from += PAGE_SIZE) {
+            int length = Math.min(PAGE_SIZE, size - from);
+            Page page = current[p];
+            System.arraycopy(page.values, 0, snapshot.values, from, length);
+            System.arraycopy(page.versions, 0, snapshot.versions, from, length);
+            System.arraycopy(page.quality, 0, snapshot.quality, from, length);
+        }
+    }
+
+
+    /**
+     * Number of completed publishes (scans and single writes); changes whenever any value may have changed
+     */
+    public long getPublishSequence() {
+        return publishSequence;
+    }
+
+
+    /**
+     * Number of ids in use
+     */
+    public synchronized int size() {
+        return nextId - freeCount;
+    }
+
+
+    @Override
+    public String toString() {
+        return "TagTable{size=" + size() + ", pages=" + pages.length + "}";
+    }
+
+
+    private static final class Page {
+        private final long[] values = new long[PAGE_SIZE];
+        private final int[] versions = new int[PAGE_SIZE];
+        private final byte[] quality = new byte[PAGE_SIZE];
+        private final byte[] hexDigits = new byte[PAGE_SIZE];
+        private final byte[] flags = new byte[PAGE_SIZE];
+    }
+}
@@ -1,7 +1,5 @@
 package tr.com.logidex.cnetdedicated.fxcontrols;
-import javafx.application.Platform;
 import javafx.beans.property.*;
-import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.control.Button;
 import javafx.scene.control.Tooltip;
@@ -15,6 +13,8 @@ import tr.com.logidex.cnetdedicated.device.Tag;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.FrameCheckException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoAcknowledgeMessageFromThePLCException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoResponseException;
+import tr.com.logidex.cnetdedicated.util.FxUpdateDispatcher;
+import tr.com.logidex.cnetdedicated.util.VirtualThreads;
 import tr.com.logidex.cnetdedicated.util.XGBCNetUtil;
 
 import java.io.IOException;
@@ -35,6 +35,7 @@ public class LSButton extends Button {
     private Tag tagWrite;
     private Tag tagRead;
     private Tag tagTwin;
+    private XGBCNetClient client = XGBCNetClient.getInstance();
     private ObjectProperty<BtnActionType> actionType = new SimpleObjectProperty<BtnActionType>();
     private ObjectProperty<Device> device = new SimpleObjectProperty<Device>();
     private StringProperty tagAddressInHex = new SimpleStringProperty();
@@ -183,6 +184,19 @@ public class LSButton extends Button {
     }
 
 
+    public XGBCNetClient getClient() {
+        return client;
+    }
+
+
+    /**
+     * Binds this control to the PLC client it writes through. Defaults to the shared client.
+     */
+    public void setClient(XGBCNetClient client) {
+        this.client = client;
+    }
+
+
     public Device getDevice() {
         return device.get();
     }
@@ -343,13 +357,13 @@ public class LSButton extends Button {
 
 
     private void write(Tag tag, boolean b) {
-        t = new Thread(new Runnable() {
+        t = VirtualThreads.start("LSButtonWrite", new Runnable() {
             @Override
             public void run() {
                 try {
-                    XGBCNetClient.getInstance().writeBit(tag, b);
+                    client.writeBit(tag, b);
                     if (tagTwin != null) { // ne yaziliyorsa ikiz bit e de yaz
-                        XGBCNetClient.getInstance().writeBit(tagTwin, b);
+                        client.writeBit(tagTwin, b);
                     }
                     eventTagWrote.setData(String.valueOf(b));
                     fireEvent(eventTagWrote);
@@ -359,34 +373,34 @@ public class LSButton extends Button {
                 }
             }
         });
-        t.start();
     }
 
 
     public void addFbListener() {
-        tagRead.valueProperty().addListener(new ChangeListener<String>() {
-            @Override
-            public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue) {
-                Platform.runLater(() -> {
-                    String bitPos = usesAnotherFeedBackAddress.get() ? fBackBitPositionInTheWord : writeBitPositionInTheWord;
-                    readBitStatus.set(XGBCNetUtil.checkBit16(newValue, Integer.parseInt(bitPos, 16)));
-                    //  xxx(getText() + "  = " + status);
-                    if (readBitStatus.get()) {
-                        setBackground(greenBackGround);
-                        if (!trueTextProperty().get().trim().equals("")) {
-                            setText(trueTextProperty().get());
-                        }
-                        tagWrite.setValueAsHexString("1"); // to match at the first read!
-                    } else {
-                        setBackground(normalBackGround);
-                        if (!falseTextProperty().get().trim().equals("")) {
-                            setText(falseTextProperty().get());
-                        }
-                        tagWrite.setValueAsHexString("0");// to match at the first read!
-                    }
-                });
+        Tag feedbackTag = tagRead;
+        // Kare başına tek güncelleme, o anki geri bildirim değeri okunur
+        Runnable feedbackUpdate = () -> showFeedback(feedbackTag.getValue());
+        feedbackTag.valueProperty().addListener(observable -> FxUpdateDispatcher.getDefault().dispatch(feedbackUpdate));
+    }
+
+
+    private void showFeedback(String value) {
+        String bitPos = usesAnotherFeedBackAddress.get() ? fBackBitPositionInTheWord : writeBitPositionInTheWord;
+        readBitStatus.set(XGBCNetUtil.checkBit16(value, Integer.parseInt(bitPos, 16)));
+        //  xxx(getText() + "  = " + status);
+        if (readBitStatus.get()) {
+            setBackground(greenBackGround);
+            if (!trueTextProperty().get().trim().equals("")) {
+                setText(trueTextProperty().get());
             }
-        });
+            tagWrite.setValueAsHexString("1"); // to match at the first read!
+        } else {
+            setBackground(normalBackGround);
+            if (!falseTextProperty().get().trim().equals("")) {
+                setText(falseTextProperty().get());
+            }
+            tagWrite.setValueAsHexString("0");// to match at the first read!
+        }
     }
 
 
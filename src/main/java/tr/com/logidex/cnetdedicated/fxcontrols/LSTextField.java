@@ -22,6 +22,7 @@ import tr.com.logidex.cnetdedicated.device.Tag;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.FrameCheckException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoAcknowledgeMessageFromThePLCException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoResponseException;
+import tr.com.logidex.cnetdedicated.util.FxUpdateDispatcher;
 
 import java.io.IOException;
 public class LSTextField extends TextField {
@@ -32,6 +33,7 @@ public class LSTextField extends TextField {
     private boolean logging;
     private long savedLastLogTime;
     private Tag tag;
+    private XGBCNetClient client = XGBCNetClient.getInstance();
     private ValidationSupport validationSupport = new ValidationSupport();
     private String lastValue = "";
     private ObjectProperty<Device> device = new SimpleObjectProperty<Device>();
@@ -49,6 +51,8 @@ public class LSTextField extends TextField {
      */
     private TagWroteEvent eventTagWrote = new TagWroteEvent();
     private BooleanProperty behaveLikeAfloat = new SimpleBooleanProperty();
+    // Kare başına tek güncelleme: beklerken gelen değişiklikler yeniden sıraya girmez
+    private final Runnable textUpdate = this::showTagValue;
 
     public LSTextField() {
         setFocusTraversable(false);
@@ -120,12 +124,12 @@ public class LSTextField extends TextField {
         setByItsDataType();
         try {
             if (getDisplayFormat().equals(DisplayFormat.STRING)) {
-                XGBCNetClient.getInstance().writeSingleString(getTag(), getTag().getValue(), inputCharLimitProperty().get());
+                client.writeSingleString(getTag(), getTag().getValue(), inputCharLimitProperty().get());
             } else {
                 if (tag.getDataType() == DataType.Word) {
-                    XGBCNetClient.getInstance().writeSingle(getTag());
+                    client.writeSingle(getTag());
                 } else if (tag.getDataType() == DataType.Dword) {
-                    XGBCNetClient.getInstance().writeDouble(getTag());
+                    client.writeDouble(getTag());
                 }
             }
             if (getScene() != null) { // fire metodu ile deger degistiginde getscene nul donuyor
@@ -158,6 +162,19 @@ public class LSTextField extends TextField {
     }
 
 
+    public XGBCNetClient getClient() {
+        return client;
+    }
+
+
+    /**
+     * Binds this control to the PLC client it writes through. Defaults to the shared client.
+     */
+    public void setClient(XGBCNetClient client) {
+        this.client = client;
+    }
+
+
     public Device getDevice() {
         return device.get();
     }
@@ -203,7 +220,7 @@ public class LSTextField extends TextField {
         this.tagAddress.set(tagAddress);
         int tagMultiplier = isBehaveLikeAfloat() ? 1 : multiplier.getValue();
         tag = new Tag(nameProperty().get(), getDevice(), getDataTypeForDataLen(getDataType()), getTagAddress(), getDisplayFormat(), tagMultiplier);
-        tag.valueProperty().addListener((observable, oldValue, newValue) -> update());
+        tag.valueProperty().addListener(observable -> update());
         Tooltip tt = new Tooltip();
         tt.setText(tag.toString() + ":" + getDisplayFormat());
         setTooltip(tt);
@@ -357,19 +374,29 @@ public class LSTextField extends TextField {
     }
 
 
+    /**
+     * Shows the current value of the tag with the next frame. Several calls before that frame show the value once.
+     */
     public void update() {
         if (tag == null) {
             return;
         }
-        Platform.runLater(() -> {
-            if (behaveLikeAfloat.get()) {
-                String s = tag.getValue().replace(',', '.');
-                float f = Float.parseFloat(s) / (float) multiplier.get();
-                this.setText(Float.toString(f));
-            } else {
-                this.setText(tag.getValue());
-            }
-        });
+        FxUpdateDispatcher.getDefault().dispatch(textUpdate);
+    }
+
+
+    private void showTagValue() {
+        Tag current = tag;
+        if (current == null) {
+            return;
+        }
+        if (behaveLikeAfloat.get()) {
+            String s = current.getValue().replace(',', '.');
+            float f = Float.parseFloat(s) / (float) multiplier.get();
+            this.setText(Float.toString(f));
+        } else {
+            this.setText(current.getValue());
+        }
     }
 
 
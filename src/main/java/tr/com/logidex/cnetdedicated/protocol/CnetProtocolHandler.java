@@ -2,10 +2,13 @@ package tr.com.logidex.cnetdedicated.protocol;
 
 import tr.com.logidex.cnetdedicated.device.DataType;
 import tr.com.logidex.cnetdedicated.device.Tag;
+import tr.com.logidex.cnetdedicated.device.TagCodec;
+import tr.com.logidex.cnetdedicated.protocol.exceptions.FrameCheckException;
 import tr.com.logidex.cnetdedicated.util.XGBCNetUtil;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -18,6 +21,8 @@ public class CnetProtocolHandler implements ProtocolHandler {
     private static final char ENQ = (char) 0x05;
     private static final char EOT = (char) 0x04;
     private static final boolean USE_FRAME_CHECK = true;
+    private static final int MAX_CONTINUOUS_READ_WORDS = 60; // 240 karakterlik veri alanı
+    private static final int MAX_REGISTER_BLOCKS = 32; // X komutunun blok sınırı
 
     private final String stationNumber;
 
@@ -107,6 +112,42 @@ public class CnetProtocolHandler implements ProtocolHandler {
         return finalizeRequestMessage(Command.W, CommandType.SB, data.toString(), null);
     }
 
+    @Override
+    public Object buildContinuousWriteRequest(List<Tag> tags) throws IOException {
+        if (tags.isEmpty() || tags.size() > WriteCoalescer.MAX_CONTINUOUS_WORDS) {
+            throw new IllegalArgumentException("A continuous write takes 1-" + WriteCoalescer.MAX_CONTINUOUS_WORDS + " words!");
+        }
+        StringBuilder data = new StringBuilder();
+        data.append(tags.get(0).formatToRequest());
+        data.append(String.format("%02X", tags.size()));
+        for (Tag tag : tags) {
+            data.append(wordValueOf(tag));
+        }
+        return finalizeRequestMessage(Command.W, CommandType.SB, data.toString(), null);
+    }
+
+    @Override
+    public Object buildMultiWriteRequest(List<Tag> tags) throws IOException {
+        if (tags.isEmpty() || tags.size() > WriteCoalescer.MAX_INDIVIDUAL_BLOCKS) {
+            throw new IllegalArgumentException("An individual write takes 1-" + WriteCoalescer.MAX_INDIVIDUAL_BLOCKS + " blocks!");
+        }
+        StringBuilder data = new StringBuilder();
+        data.append(String.format("%02X", tags.size()));
+        for (Tag tag : tags) {
+            data.append(tag.formatToRequest());
+            data.append(wordValueOf(tag));
+        }
+        return finalizeRequestMessage(Command.W, CommandType.SS, data.toString(), null);
+    }
+
+    private static String wordValueOf(Tag tag) {
+        if (tag.getDataType() != DataType.Word) {
+            throw new IllegalArgumentException("This tag type is not a Word type!");
+        }
+        // Blok sınırları değer uzunluğuna bağlı, her word 4 hex karakter olmalı
+        return XGBCNetUtil.addZeroToStart(4, tag.getValueAsHexString());
+    }
+
     @Override
     public Object buildRegisterRequest(List<Tag> tags, String registrationNumber) throws IOException {
         StringBuilder data = new StringBuilder();
@@ -123,6 +164,55 @@ public class CnetProtocolHandler implements ProtocolHandler {
         return finalizeRequestMessage(Command.Y, CommandType.NONE, registrationNumber, registrationNumber);
     }
 
+    @Override
+    public List<List<Tag>> splitForBatchRead(List<Tag> tags) {
+        List<List<Tag>> chunks = new ArrayList<>();
+        for (int from = 0; from < tags.size(); from += MAX_REGISTER_BLOCKS) {
+            chunks.add(tags.subList(from, Math.min(from + MAX_REGISTER_BLOCKS, tags.size())));
+        }
+        return chunks;
+    }
+
+    @Override
+    public CompiledRequest compileExecuteRequest(List<Tag> tags, String registrationNumber) {
+        // Y çerçevesi yalnızca kayıt numarasına bağlı, her taramada aynı String gönderilir
+        String regNo = XGBCNetUtil.addZeroIfNeed(registrationNumber);
+        String frame = finalizeRequestMessage(Command.Y, CommandType.NONE, regNo, regNo);
+        return () -> frame;
+    }
+
+    @Override
+    public int getMaxContinuousReadWords() {
+        return MAX_CONTINUOUS_READ_WORDS;
+    }
+
+    @Override
+    public CompiledRequest compileRangeReadRequest(ReadPlanner.Range range) {
+        String frame = finalizeRequestMessage(Command.R, CommandType.SB,
+                range.getFirstTag().formatToRequest() + String.format("%02X", range.getWordCount()), null);
+        return () -> frame;
+    }
+
+    @Override
+    public long[] parseRangeReadResponse(Object rawResponse, ReadPlanner.Range range) throws Exception {
+        String response = (String) rawResponse;
+        if (!XGBCNetUtil.checkFrame(response)) {
+            throw new FrameCheckException();
+        }
+        // ACK + istasyon (2) + komut (3) + blok sayısı (2) + byte sayısı (2), ardından her word için 4 hex karakter
+        int dataStart = 10;
+        int dataLength = response.length() - 3 - dataStart;
+        if (dataLength < range.getWordCount() * 4) {
+            throw new IOException("Continuous read returned " + Math.max(dataLength, 0) / 4 + " of " + range.getWordCount() + " words");
+        }
+        long[] words = new long[range.getWordCount()];
+        for (int i = 0; i < words.length; i++) {
+            int from = dataStart + i * 4;
+            words[i] = TagCodec.parseHex(response, from, from + 4);
+        }
+        return words;
+    }
+
     @Override
     public String parseResponse(Object rawResponse) throws Exception {
         if (!(rawResponse instanceof String)) {
@@ -136,6 +226,16 @@ public class CnetProtocolHandler implements ProtocolHandler {
         throw new Exception("Invalid response: " + re.getResponse());
     }
 
+    @Override
+    public boolean isIdempotent(Object request) {
+        if (!(request instanceof String) || ((String) request).length() < 4) {
+            return false;
+        }
+        // ENQ + 2 haneli istasyon numarası + komut
+        char command = Character.toUpperCase(((String) request).charAt(3));
+        return command == 'R' || command == 'X' || command == 'Y';
+    }
+
     @Override
     public boolean isResponseValid(Object rawResponse) {
         if (!(rawResponse instanceof String)) {
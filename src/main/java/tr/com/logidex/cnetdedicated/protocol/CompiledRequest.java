@@ -0,0 +1,14 @@
+package tr.com.logidex.cnetdedicated.protocol;
+
+/**
+ * A request frame prepared once for a registered monitoring group.
+ * Polling the group only asks for the next frame instead of encoding the whole group again.
+ */
+@FunctionalInterface
+public interface CompiledRequest {
+
+    /**
+     * Frame to send for the next poll (String for Cnet, byte[] for FENet)
+     */
+    Object nextFrame();
+}
@@ -2,7 +2,9 @@ package tr.com.logidex.cnetdedicated.protocol;
 
 import tr.com.logidex.cnetdedicated.device.DataType;
 import tr.com.logidex.cnetdedicated.device.Tag;
+import tr.com.logidex.cnetdedicated.device.TagCodec;
 import tr.com.logidex.cnetdedicated.protocol.fenet.FENetFrameBuilder;
+import tr.com.logidex.cnetdedicated.protocol.fenet.FENetFrameTemplate;
 import tr.com.logidex.cnetdedicated.protocol.fenet.FENetResponse;
 import tr.com.logidex.cnetdedicated.protocol.fenet.FENetResponseParser;
 
@@ -15,6 +17,7 @@ import java.util.List;
  */
 public class FENetProtocolHandler implements ProtocolHandler {
 
+    private static final int READ_REQUEST_INSTRUCTION = 0x5400;
     private final FENetFrameBuilder frameBuilder;
     private final FENetResponseParser responseParser;
 
@@ -80,6 +83,17 @@ public class FENetProtocolHandler implements ProtocolHandler {
         return frameBuilder.buildWriteRequest(tag, hexData.toString());
     }
 
+    @Override
+    public Object buildContinuousWriteRequest(List<Tag> tags) throws IOException {
+        // FENet requests are pipelined on the socket, word writes are sent one by one
+        throw new UnsupportedOperationException("FENet writes are pipelined individually");
+    }
+
+    @Override
+    public Object buildMultiWriteRequest(List<Tag> tags) throws IOException {
+        throw new UnsupportedOperationException("FENet writes are pipelined individually");
+    }
+
     @Override
     public Object buildRegisterRequest(List<Tag> tags, String registrationNumber) throws IOException {
         // FENet doesn't use registration numbers - it does batch reads directly
@@ -95,6 +109,48 @@ public class FENetProtocolHandler implements ProtocolHandler {
         throw new UnsupportedOperationException("FENet doesn't use separate execute - batch read is done in registerDevicesToMonitor");
     }
 
+    @Override
+    public List<List<Tag>> splitForBatchRead(List<Tag> tags) {
+        return frameBuilder.splitBatchRead(tags);
+    }
+
+    @Override
+    public CompiledRequest compileExecuteRequest(List<Tag> tags, String registrationNumber) {
+        // Grup değişmez, her taramada yalnızca invoke ID ve checksum yenilenir
+        FENetFrameTemplate template = frameBuilder.compileBatchReadRequest(tags);
+        return () -> frameBuilder.buildFromTemplate(template);
+    }
+
+    @Override
+    public int getMaxContinuousReadWords() {
+        return FENetFrameBuilder.MAX_CONTINUOUS_READ_BYTES / 2;
+    }
+
+    @Override
+    public CompiledRequest compileRangeReadRequest(ReadPlanner.Range range) {
+        FENetFrameTemplate template = frameBuilder.compileContinuousReadRequest(range.getDevice(), range.getStartAddress(), range.getWordCount());
+        return () -> frameBuilder.buildFromTemplate(template);
+    }
+
+    @Override
+    public long[] parseRangeReadResponse(Object rawResponse, ReadPlanner.Range range) throws Exception {
+        FENetResponse response = responseParser.parse((byte[]) rawResponse);
+        if (!response.isValid()) {
+            throw new Exception("Invalid FENet response: " + response.getErrorMessage());
+        }
+        if (!response.isSuccess()) {
+            throw new Exception("FENet error status: 0x" + String.format("%04X", response.getErrorStatus()));
+        }
+        if (response.getData().length < range.getWordCount() * 2) {
+            throw new IOException("Continuous read returned " + response.getData().length + " of " + range.getWordCount() * 2 + " bytes");
+        }
+        long[] words = new long[range.getWordCount()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = TagCodec.decodeLittleEndian(response.getData(), i * 2, 2);
+        }
+        return words;
+    }
+
     @Override
     public String parseResponse(Object rawResponse) throws Exception {
         if (!(rawResponse instanceof byte[])) {
@@ -115,6 +171,17 @@ public class FENetProtocolHandler implements ProtocolHandler {
         return response.getDataAsHexString();
     }
 
+    @Override
+    public boolean isIdempotent(Object request) {
+        if (!(request instanceof byte[]) || ((byte[]) request).length < 22) {
+            return false;
+        }
+        // Komut kodu başlıktan hemen sonra gelir (bytes 20-21, little-endian)
+        byte[] frame = (byte[]) request;
+        int instruction = (frame[20] & 0xFF) | ((frame[21] & 0xFF) << 8);
+        return instruction == READ_REQUEST_INSTRUCTION;
+    }
+
     @Override
     public boolean isResponseValid(Object rawResponse) {
         if (!(rawResponse instanceof byte[])) {
@@ -159,7 +226,42 @@ public class FENetProtocolHandler implements ProtocolHandler {
      * @param tags The list of tags that were read
      * @return Array of hex strings, one for each tag
      */
-    public String[] parseBatchReadResponse(Object rawResponse, List<tr.com.logidex.cnetdedicated.device.Tag> tags) throws Exception {
+    public String[] parseBatchReadResponse(Object rawResponse, List<Tag> tags) throws Exception {
+        long[] values = parseBatchReadValues(rawResponse, tags);
+        String[] results = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            results[i] = TagCodec.toHex(values[i], TagCodec.byteLength(tags.get(i).getDataType()) * 2);
+        }
+        return results;
+    }
+
+    /**
+     * Parse batch read response into one raw value per tag, decoded straight from the little-endian blocks
+     * @param rawResponse The raw byte[] response
+     * @param tags The list of tags that were read
+     * @return Raw value of each tag, {@link TagCodec#byteLength} bytes wide
+     */
+    public long[] parseBatchReadValues(Object rawResponse, List<Tag> tags) throws Exception {
+        // Bloklar art arda eklenmiş, her tag kendi veri tipinin uzunluğu kadar yer kaplar
+        byte[] data = parseBatchReadData(rawResponse, tags);
+        long[] values = new long[tags.size()];
+        int offset = 0;
+        for (int i = 0; i < tags.size(); i++) {
+            int length = TagCodec.byteLength(tags.get(i).getDataType());
+            values[i] = TagCodec.decodeLittleEndian(data, offset, length);
+            offset += length;
+        }
+        return values;
+    }
+
+    /**
+     * Validate a batch read response and return its data blocks concatenated, without decoding them.
+     * Tag i starts after the {@link TagCodec#byteLength} bytes of the tags before it.
+     * @param rawResponse The raw byte[] response
+     * @param tags The list of tags that were read
+     * @return Data area holding at least the bytes of every tag
+     */
+    public byte[] parseBatchReadData(Object rawResponse, List<Tag> tags) throws Exception {
         if (!(rawResponse instanceof byte[])) {
             throw new IllegalArgumentException("FENet expects byte[] response");
         }
@@ -175,34 +277,15 @@ public class FENetProtocolHandler implements ProtocolHandler {
             throw new Exception("FENet error status: 0x" + String.format("%04X", response.getErrorStatus()));
         }
 
-        // Extract data for each tag
-        String[] results = new String[tags.size()];
-        int dataLengthPerTag = 2; // Default to 2 bytes (Word)
-
+        byte[] data = response.getData();
+        int offset = 0;
         for (int i = 0; i < tags.size(); i++) {
-            tr.com.logidex.cnetdedicated.device.Tag tag = tags.get(i);
-
-            // Determine data length based on tag data type
-            switch (tag.getDataType()) {
-                case Bit:
-                case Byte:
-                    dataLengthPerTag = 1;
-                    break;
-                case Word:
-                    dataLengthPerTag = 2;
-                    break;
-                case Dword:
-                    dataLengthPerTag = 4;
-                    break;
-                case Lword:
-                    dataLengthPerTag = 8;
-                    break;
+            offset += TagCodec.byteLength(tags.get(i).getDataType());
+            if (offset > data.length) {
+                throw new IOException("Batch read returned " + data.length + " bytes, block " + i + " is missing");
             }
-
-            results[i] = response.getBlockDataAsHexString(i, dataLengthPerTag);
         }
-
-        return results;
+        return data;
     }
 
     public FENetFrameBuilder getFrameBuilder() {
@@ -36,6 +36,16 @@ public interface ProtocolHandler {
      */
     Object buildWriteStringRequest(Tag tag, String strData, int theLimitToWrite) throws IOException;
 
+    /**
+     * Build one continuous write frame for words at consecutive addresses, starting at the first tag
+     */
+    Object buildContinuousWriteRequest(List<Tag> tags) throws IOException;
+
+    /**
+     * Build one individual write frame with a block per word tag
+     */
+    Object buildMultiWriteRequest(List<Tag> tags) throws IOException;
+
     /**
      * Build a register devices request frame
      */
@@ -46,6 +56,31 @@ public interface ProtocolHandler {
      */
     Object buildExecuteRequest(String registrationNumber) throws IOException;
 
+    /**
+     * Split a monitoring group into parts that each fit into one register or batch read frame, keeping the tag order
+     */
+    List<List<Tag>> splitForBatchRead(List<Tag> tags);
+
+    /**
+     * Prepare the request that polls a registered group, once per registration
+     */
+    CompiledRequest compileExecuteRequest(List<Tag> tags, String registrationNumber);
+
+    /**
+     * Longest range of words that one continuous read can return
+     */
+    int getMaxContinuousReadWords();
+
+    /**
+     * Prepare the continuous read of a planned address range, once per registration
+     */
+    CompiledRequest compileRangeReadRequest(ReadPlanner.Range range);
+
+    /**
+     * Parse a continuous read response into one raw value per word of the range
+     */
+    long[] parseRangeReadResponse(Object rawResponse, ReadPlanner.Range range) throws Exception;
+
     /**
      * Parse response and extract data as hex string
      */
@@ -56,6 +91,11 @@ public interface ProtocolHandler {
      */
     boolean isResponseValid(Object rawResponse);
 
+    /**
+     * Whether the request only reads (or registers) data, so it can safely be sent again after a reconnect
+     */
+    boolean isIdempotent(Object request);
+
     /**
      * Get the command from response
      */
@@ -0,0 +1,193 @@
+package tr.com.logidex.cnetdedicated.protocol;
+
+import tr.com.logidex.cnetdedicated.device.DataType;
+import tr.com.logidex.cnetdedicated.device.Device;
+import tr.com.logidex.cnetdedicated.device.Tag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a set of word tags into continuous address ranges.
+ * <p>
+ * Tags are sorted by device and numeric address; neighbours whose distance is within the gap
+ * tolerance share one range (e.g. D100, D101 and D103 become D100..D103 with a tolerance of 1).
+ * Each range is read with one continuous read and the returned words are sliced back into the tags.
+ * Tags that cannot be merged stay in {@link ReadPlan#getIndividualTags()} and are read as before.
+ */
+public final class ReadPlanner {
+    /**
+     * Unused words that may be read between two tags of the same range
+     */
+    public static final int DEFAULT_GAP_TOLERANCE = 2;
+
+
+    private ReadPlanner() {
+    }
+
+
+    /**
+     * Whether the tag has a word address that can be part of a range
+     */
+    public static boolean isPlannable(Tag tag) {
+        return tag.getDataType() == DataType.Word && addressOf(tag) >= 0;
+    }
+
+
+    /**
+     * @param gapTolerance unused words allowed between neighbouring tags
+     * @param maxWords     longest range the protocol can read in one frame
+     */
+    public static ReadPlan plan(List<Tag> tags, int gapTolerance, int maxWords) {
+        if (gapTolerance < 0 || maxWords < 2) {
+            throw new IllegalArgumentException("Invalid read plan limits: gap=" + gapTolerance + ", maxWords=" + maxWords);
+        }
+        Map<Device, List<Tag>> byDevice = new EnumMap<>(Device.class);
+        List<Tag> individual = new ArrayList<>();
+        for (Tag tag : tags) {
+            if (isPlannable(tag)) {
+                byDevice.computeIfAbsent(tag.getDevice(), d -> new ArrayList<>()).add(tag);
+            } else {
+                individual.add(tag);
+            }
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        for (List<Tag> deviceTags : byDevice.values()) {
+            deviceTags.sort(Comparator.comparingInt(ReadPlanner::addressOf));
+            int from = 0;
+            while (from < deviceTags.size()) {
+                int start = addressOf(deviceTags.get(from));
+                int end = start;
+                int to = from + 1;
+                while (to < deviceTags.size()) {
+                    int address = addressOf(deviceTags.get(to));
+                    if (address - end - 1 > gapTolerance || address - start + 1 > maxWords) {
+                        break;
+                    }
+                    end = address;
+                    to++;
+                }
+                List<Tag> members = deviceTags.subList(from, to);
+                if (end > start) {
+                    ranges.add(new Range(start, end - start + 1, members));
+                } else {
+                    individual.addAll(members); // Tek adres, sürekli okuma kazanç sağlamaz
+                }
+                from = to;
+            }
+        }
+        return new ReadPlan(ranges, individual);
+    }
+
+
+    /**
+     * Numeric address of the tag, or -1 if it is not a plain number. Also used by {@link WriteCoalescer}.
+     */
+    static int addressOf(Tag tag) {
+        try {
+            return Integer.parseInt(tag.getAddress());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Ranges and the tags left outside of them
+     */
+    public static final class ReadPlan {
+        private final List<Range> ranges;
+        private final List<Tag> individualTags;
+
+
+        private ReadPlan(List<Range> ranges, List<Tag> individualTags) {
+            this.ranges = Collections.unmodifiableList(ranges);
+            this.individualTags = Collections.unmodifiableList(individualTags);
+        }
+
+
+        public List<Range> getRanges() {
+            return ranges;
+        }
+
+
+        public List<Tag> getIndividualTags() {
+            return individualTags;
+        }
+
+
+        @Override
+        public String toString() {
+            return "ReadPlan{ranges=" + ranges + ", individual=" + individualTags.size() + "}";
+        }
+    }
+
+
+    /**
+     * Consecutive words of one device, starting at the address of the first tag
+     */
+    public static final class Range {
+        private final int startAddress;
+        private final int wordCount;
+        private final List<Tag> tags;
+        private final int[] offsets;
+
+
+        private Range(int startAddress, int wordCount, List<Tag> tags) {
+            this.startAddress = startAddress;
+            this.wordCount = wordCount;
+            this.tags = Collections.unmodifiableList(new ArrayList<>(tags));
+            this.offsets = new int[tags.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = addressOf(tags.get(i)) - startAddress;
+            }
+        }
+
+
+        public Device getDevice() {
+            return tags.get(0).getDevice();
+        }
+
+
+        /**
+         * Tag at the start address, used to name the range in requests
+         */
+        public Tag getFirstTag() {
+            return tags.get(0);
+        }
+
+
+        public int getStartAddress() {
+            return startAddress;
+        }
+
+
+        public int getWordCount() {
+            return wordCount;
+        }
+
+
+        public List<Tag> getTags() {
+            return tags;
+        }
+
+
+        /**
+         * Word index of the i-th tag inside the range
+         */
+        public int getOffset(int tagIndex) {
+            return offsets[tagIndex];
+        }
+
+
+        @Override
+        public String toString() {
+            return getDevice() + "W" + startAddress + "+" + wordCount;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package tr.com.logidex.cnetdedicated.protocol;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maps any number of logical monitoring groups onto the limited Cnet registration numbers.
+ * <p>
+ * A group holds one registration number per frame while it is resident. When a cold group is read
+ * and there are not enough free numbers, the least recently read groups are evicted; the PLC keeps
+ * their old registration until the new group's X frame overwrites it. Pinned groups are never evicted.
+ * The class is not thread-safe, callers hold their own lock while they lease and send the frames.
+ */
+public class RegistrationSlotManager {
+    private final int slotCount;
+    // Erişim sıralı: ilk eleman en uzun süredir okunmayan grup
+    private final LinkedHashMap<Integer, int[]> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final TreeSet<Integer> freeSlots = new TreeSet<>();
+    private final Set<Integer> pinnedGroups = new HashSet<>();
+    private long hits;
+    private long registrations;
+    private long evictions;
+
+
+    public RegistrationSlotManager(int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("slotCount must be positive: " + slotCount);
+        }
+        this.slotCount = slotCount;
+        for (int slot = 0; slot < slotCount; slot++) {
+            freeSlots.add(slot);
+        }
+    }
+
+
+    /**
+     * Returns the registration numbers of the group, allocating them if the group is not resident.
+     *
+     * @param group         logical group number
+     * @param slotsNeeded   number of frames of the group
+     * @param preferredSlot number tried first for the first frame, e.g. the group number itself
+     * @throws IOException if the group needs more numbers than the unpinned groups can free
+     */
+    public Lease acquire(int group, int slotsNeeded, int preferredSlot) throws IOException {
+        int[] slots = resident.get(group);
+        if (slots != null && slots.length == slotsNeeded) {
+            hits++;
+            return new Lease(slots, false);
+        }
+        if (slots != null) {
+            release(group); // Çerçeve sayısı değişmiş, yeniden yerleştirilir
+        }
+        if (slotsNeeded > slotCount - pinnedSlotCount(group)) {
+            throw new IOException("Group " + group + " needs " + slotsNeeded + " registration numbers, only "
+                    + (slotCount - pinnedSlotCount(group)) + " can be freed");
+        }
+        Iterator<Map.Entry<Integer, int[]>> lru = resident.entrySet().iterator();
+        while (freeSlots.size() < slotsNeeded) {
+            Map.Entry<Integer, int[]> victim = lru.next();
+            if (pinnedGroups.contains(victim.getKey())) {
+                continue;
+            }
+            for (int slot : victim.getValue()) {
+                freeSlots.add(slot);
+            }
+            lru.remove();
+            evictions++;
+        }
+        slots = new int[slotsNeeded];
+        for (int i = 0; i < slotsNeeded; i++) {
+            // İlk çerçeve mümkünse grubun kendi numarasını alır, diğerleri en üstten
+            slots[i] = i == 0 && freeSlots.remove(preferredSlot) ? preferredSlot : freeSlots.pollLast();
+        }
+        resident.put(group, slots);
+        registrations++;
+        return new Lease(slots, true);
+    }
+
+
+    private int pinnedSlotCount(int except) {
+        int count = 0;
+        for (Map.Entry<Integer, int[]> entry : resident.entrySet()) {
+            if (entry.getKey() != except && pinnedGroups.contains(entry.getKey())) {
+                count += entry.getValue().length;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Frees the numbers of the group, e.g. after its registration failed or it was removed.
+     */
+    public void release(int group) {
+        int[] slots = resident.remove(group);
+        if (slots != null) {
+            for (int slot : slots) {
+                freeSlots.add(slot);
+            }
+        }
+    }
+
+
+    /**
+     * Frees the numbers of the group only if they are still those of the lease, so a registration that
+     * failed late does not drop the numbers the group was given again in the meantime.
+     *
+     * @return true if the numbers were freed
+     */
+    public boolean release(int group, Lease lease) {
+        if (!resident.remove(group, lease.slots)) {
+            return false;
+        }
+        for (int slot : lease.slots) {
+            freeSlots.add(slot);
+        }
+        return true;
+    }
+
+
+    /**
+     * Forgets every registration, e.g. when the PLC may have lost them. Pinned groups stay pinned.
+     */
+    public void releaseAll() {
+        resident.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            freeSlots.add(slot);
+        }
+    }
+
+
+    /**
+     * Registration numbers of a resident group without touching its recency, or null.
+     */
+    public int[] slotsOf(int group) {
+        for (Map.Entry<Integer, int[]> entry : resident.entrySet()) {
+            if (entry.getKey() == group) {
+                return entry.getValue().clone();
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Current lease of a resident group without touching its recency, or null.
+     */
+    public Lease leaseOf(int group) {
+        for (Map.Entry<Integer, int[]> entry : resident.entrySet()) {
+            if (entry.getKey() == group) {
+                return new Lease(entry.getValue(), false);
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Resident groups, least recently read first.
+     */
+    public Set<Integer> getResidentGroups() {
+        return new LinkedHashSet<>(resident.keySet());
+    }
+
+
+    public void setPinned(int group, boolean pinned) {
+        if (pinned) {
+            pinnedGroups.add(group);
+        } else {
+            pinnedGroups.remove(group);
+        }
+    }
+
+
+    public boolean isPinned(int group) {
+        return pinnedGroups.contains(group);
+    }
+
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+
+    /**
+     * Reads of groups that were already registered
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+
+    /**
+     * X registrations, including the first one of every group
+     */
+    public long getRegistrationCount() {
+        return registrations;
+    }
+
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+
+    @Override
+    public String toString() {
+        return "RegistrationSlotManager{resident=" + resident.size() + ", free=" + freeSlots.size()
+                + ", hits=" + hits + ", registrations=" + registrations + ", evictions=" + evictions + "}";
+    }
+
+
+    /**
+     * Registration numbers handed out for one read of a group
+     */
+    public static final class Lease {
+        private final int[] slots;
+        private final boolean fresh;
+
+
+        private Lease(int[] slots, boolean fresh) {
+            this.slots = slots;
+            this.fresh = fresh;
+        }
+
+
+        /**
+         * Registration number of the i-th frame
+         */
+        public int getSlot(int frame) {
+            return slots[frame];
+        }
+
+
+        public int getFrameCount() {
+            return slots.length;
+        }
+
+
+        /**
+         * True if the numbers were just allocated and the frames must be registered before they are read
+         */
+        public boolean needsRegistration() {
+            return fresh;
+        }
+
+
+        @Override
+        public String toString() {
+            return Arrays.toString(slots) + (fresh ? " new" : "");
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package tr.com.logidex.cnetdedicated.protocol;
+import java.util.logging.Logger;
 public class ResponseEvaluator {
+    private static final Logger logger = Logger.getLogger(ResponseEvaluator.class.getName());
     private Response response;
     private String rawResponse;
 
@@ -63,8 +65,8 @@ public class ResponseEvaluator {
                 response.setStructrizedDataArea(dataAreaForXorY);
             }
         } else {
-            System.err.println("Unexpected response! The system will stop!");
-            System.exit(-1);
+            // NAK veya geçersiz yanıt: çağıran getResponse() ile kontrol eder, okuyucu thread'inde JVM kapatılmaz
+            logger.warning("Unexpected response: " + res);
         }
     }
 
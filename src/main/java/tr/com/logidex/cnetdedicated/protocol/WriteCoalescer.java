@@ -0,0 +1,132 @@
+package tr.com.logidex.cnetdedicated.protocol;
+
+import tr.com.logidex.cnetdedicated.device.DataType;
+import tr.com.logidex.cnetdedicated.device.Device;
+import tr.com.logidex.cnetdedicated.device.Tag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups pending word writes into as few Cnet frames as possible.
+ * <p>
+ * Words at consecutive addresses of the same device (e.g. D100..D139) become one continuous
+ * ({@link CommandType#SB}) write. The remaining words are packed into individual
+ * ({@link CommandType#SS}) writes of up to {@link #MAX_INDIVIDUAL_BLOCKS} blocks.
+ * When the same address is written more than once, the last value wins.
+ */
+public final class WriteCoalescer {
+    /**
+     * Cnet allows at most 16 blocks in one individual write
+     */
+    public static final int MAX_INDIVIDUAL_BLOCKS = 16;
+    /**
+     * Words per continuous write, keeps the ASCII data area at 240 characters
+     */
+    public static final int MAX_CONTINUOUS_WORDS = 60;
+
+
+    private WriteCoalescer() {
+    }
+
+
+    /**
+     * Whether the tag can take part in a coalesced write
+     */
+    public static boolean isCoalescible(Tag tag) {
+        return tag.getDataType() == DataType.Word;
+    }
+
+
+    /**
+     * Splits the word tags into write frames, continuous runs first.
+     *
+     * @throws IllegalArgumentException if a tag is not a Word tag
+     */
+    public static List<Batch> plan(List<Tag> tags) {
+        // Aynı adrese birden fazla yazma varsa son değer geçerli
+        Map<String, Tag> latest = new LinkedHashMap<>();
+        for (Tag tag : tags) {
+            if (!isCoalescible(tag)) {
+                throw new IllegalArgumentException("Only Word tags can be coalesced: " + tag.getName());
+            }
+            String key = tag.toString();
+            latest.remove(key);
+            latest.put(key, tag);
+        }
+
+        Map<Device, List<Tag>> byDevice = new EnumMap<>(Device.class);
+        List<Tag> individual = new ArrayList<>();
+        for (Tag tag : latest.values()) {
+            if (ReadPlanner.addressOf(tag) < 0) {
+                individual.add(tag); // Sayısal olmayan adres, komşuluk aranmaz
+            } else {
+                byDevice.computeIfAbsent(tag.getDevice(), d -> new ArrayList<>()).add(tag);
+            }
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        for (List<Tag> deviceTags : byDevice.values()) {
+            deviceTags.sort(Comparator.comparingInt(ReadPlanner::addressOf));
+            int runStart = 0;
+            for (int i = 1; i <= deviceTags.size(); i++) {
+                boolean runEnds = i == deviceTags.size()
+                        || ReadPlanner.addressOf(deviceTags.get(i)) != ReadPlanner.addressOf(deviceTags.get(i - 1)) + 1
+                        || i - runStart == MAX_CONTINUOUS_WORDS;
+                if (!runEnds) {
+                    continue;
+                }
+                if (i - runStart > 1) {
+                    batches.add(new Batch(true, deviceTags.subList(runStart, i)));
+                } else {
+                    individual.add(deviceTags.get(runStart));
+                }
+                runStart = i;
+            }
+        }
+        for (int from = 0; from < individual.size(); from += MAX_INDIVIDUAL_BLOCKS) {
+            int to = Math.min(from + MAX_INDIVIDUAL_BLOCKS, individual.size());
+            batches.add(new Batch(false, individual.subList(from, to)));
+        }
+        return batches;
+    }
+
+
+    /**
+     * Tags that are written with one frame
+     */
+    public static final class Batch {
+        private final boolean continuous;
+        private final List<Tag> tags;
+
+
+        private Batch(boolean continuous, List<Tag> tags) {
+            this.continuous = continuous;
+            this.tags = Collections.unmodifiableList(new ArrayList<>(tags));
+        }
+
+
+        /**
+         * True for a continuous write starting at the first tag, false for an individual multi-block write
+         */
+        public boolean isContinuous() {
+            return continuous;
+        }
+
+
+        public List<Tag> getTags() {
+            return tags;
+        }
+
+
+        @Override
+        public String toString() {
+            return (continuous ? "SB" : "SS") + tags;
+        }
+    }
+}
@@ -8,4 +8,11 @@ public interface Connection {
     void sendRequest(byte[] requestMessage, String requestId) throws IOException;
     ResponseReader getResponseReader();
     boolean isBinaryProtocol();
+    /**
+     * Whether several requests may be outstanding at once. When false the caller
+     * must wait for each response before sending the next request.
+     */
+    default boolean supportsPipelining() {
+        return false;
+    }
 }
@@ -1,10 +1,24 @@
 package tr.com.logidex.cnetdedicated.protocol.connection;
+import tr.com.logidex.cnetdedicated.app.XGBCNetClient;
 public class ConnectionFactory {
     public static Connection createConnection(ConnectionParams params) {
+        return createConnection(params, XGBCNetClient.getInstance());
+    }
+
+
+    public static Connection createConnection(ConnectionParams params, ConnectionObserver observer) {
         if (params instanceof SerialConnectionParams) {
-            return new SerialConnection((SerialConnectionParams) params);
+            SerialConnectionParams serialParams = (SerialConnectionParams) params;
+            if (serialParams.isMultiDrop()) {
+                return new SerialBusConnection(serialParams, observer);
+            }
+            return new SerialConnection(serialParams, observer);
         } else if (params instanceof TCPConnectionParams) {
-            return new TCPConnection((TCPConnectionParams) params);
+            TCPConnectionParams tcpParams = (TCPConnectionParams) params;
+            if (tcpParams.getPoolSize() > 1) {
+                return new PooledTCPConnection(tcpParams, observer);
+            }
+            return new TCPConnection(tcpParams, observer);
         } else {
             throw new IllegalArgumentException("Unsopported connection params type: " + params.getClass().getName());
         }
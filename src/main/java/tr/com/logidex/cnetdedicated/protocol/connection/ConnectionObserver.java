@@ -0,0 +1,10 @@
+package tr.com.logidex.cnetdedicated.protocol.connection;
+/**
+ * Receives the responses of a connection, whichever transport it uses.
+ * Every client instance observes only its own connection.
+ */
+public interface ConnectionObserver extends SerialReader.SerialReaderObserver, TCPReader.TCPReaderObserver {
+    @Override
+    default void onConnectionLost(Throwable cause) {
+    }
+}
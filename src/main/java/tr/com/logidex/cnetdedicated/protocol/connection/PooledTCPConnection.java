@@ -0,0 +1,170 @@
+package tr.com.logidex.cnetdedicated.protocol.connection;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * Opens several FENet sessions to the same PLC and spreads requests over them.
+ * Each request goes to the connected socket with the fewest outstanding requests, so a
+ * long registration-group read does not hold up writes sent from other threads.
+ */
+public class PooledTCPConnection implements Connection {
+    private final List<TCPConnection> members;
+    private final PooledResponseReader responseReader = new PooledResponseReader();
+
+
+    public PooledTCPConnection(TCPConnectionParams params, TCPReader.TCPReaderObserver observer) {
+        List<TCPConnection> sessions = new ArrayList<>(params.getPoolSize());
+        for (int i = 0; i < params.getPoolSize(); i++) {
+            sessions.add(new TCPConnection(params, observer));
+        }
+        this.members = Collections.unmodifiableList(sessions);
+    }
+
+
+    @Override
+    public boolean connect() throws IOException {
+        for (TCPConnection member : members) {
+            try {
+                member.connect();
+            } catch (IOException e) {
+                disconnect(); // Yarım kalan havuzu kapat
+                throw e;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    public void disconnect() {
+        for (TCPConnection member : members) {
+            member.disconnect();
+        }
+    }
+
+
+    /**
+     * The pool is usable while at least one of its sockets is connected.
+     */
+    @Override
+    public boolean isConnected() {
+        for (TCPConnection member : members) {
+            if (member.isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Override
+    public void sendRequest(String requestMessage, String requestId) throws IOException {
+        responseReader.sendRequest(requestMessage, requestId);
+    }
+
+
+    @Override
+    public void sendRequest(byte[] requestMessage, String requestId) throws IOException {
+        TCPReader reader = leastLoaded();
+        // Sahiplik, cevap gelmeden önce kaydedilmeli
+        responseReader.ownerByRequestId.put(requestId, reader);
+        try {
+            reader.sendRequest(requestMessage, requestId);
+        } catch (IOException | RuntimeException e) {
+            responseReader.ownerByRequestId.remove(requestId);
+            throw e;
+        }
+    }
+
+
+    private TCPReader leastLoaded() throws IOException {
+        TCPReader selected = null;
+        int selectedOutstanding = Integer.MAX_VALUE;
+        for (TCPConnection member : members) {
+            if (!member.isConnected()) {
+                continue;
+            }
+            TCPReader reader = member.getTCPReader();
+            int outstanding = reader.getOutstandingCount();
+            if (outstanding < selectedOutstanding) {
+                selected = reader;
+                selectedOutstanding = outstanding;
+            }
+        }
+        if (selected == null) {
+            throw new IOException("Bağlantı kapalı. Önce connect() metodu ile bağlantı kurun.");
+        }
+        return selected;
+    }
+
+
+    public int getPoolSize() {
+        return members.size();
+    }
+
+
+    /**
+     * Number of requests waiting for a response on each socket of the pool.
+     */
+    public int[] getOutstandingCounts() {
+        int[] counts = new int[members.size()];
+        for (int i = 0; i < counts.length; i++) {
+            TCPReader reader = members.get(i).getTCPReader();
+            counts[i] = reader == null ? 0 : reader.getOutstandingCount();
+        }
+        return counts;
+    }
+
+
+    @Override
+    public ResponseReader getResponseReader() {
+        return responseReader;
+    }
+
+
+    @Override
+    public boolean isBinaryProtocol() {
+        return true;
+    }
+
+
+    @Override
+    public boolean supportsPipelining() {
+        return true;
+    }
+
+
+    /**
+     * Holds the pending responses of the whole pool and remembers which socket carries each
+     * request, so a cleared request frees the pipeline slot of the right socket.
+     */
+    private static class PooledResponseReader implements ResponseReader {
+        private final ConcurrentHashMap<String, CompletableFuture<Object>> requestResponseMap = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, TCPReader> ownerByRequestId = new ConcurrentHashMap<>();
+
+
+        @Override
+        public void sendRequest(String request, String requestId) throws IOException {
+            throw new UnsupportedOperationException("TCP connection only supports the binary FENet protocol");
+        }
+
+
+        @Override
+        public ConcurrentHashMap<String, CompletableFuture<Object>> getRequestResponseMap() {
+            return requestResponseMap;
+        }
+
+
+        @Override
+        public void clearResponse(String requestId) {
+            requestResponseMap.remove(requestId);
+            TCPReader owner = ownerByRequestId.remove(requestId);
+            if (owner != null) {
+                owner.clearResponse(requestId);
+            }
+        }
+    }
+}
@@ -1,14 +1,32 @@
 package tr.com.logidex.cnetdedicated.protocol.connection;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 public interface ResponseReader {
-    Object getResponse(String requestId);
-    void setResponse(String requestId, Object data);
     void sendRequest(String request, String requestId) throws IOException;
-    ConcurrentHashMap<String, ?> getRequestResponseMap();
-    default void clearResponse(String requestId) {
-        if (getRequestResponseMap().containsKey(requestId)) {
-            getRequestResponseMap().remove(requestId);
+    ConcurrentHashMap<String, CompletableFuture<Object>> getRequestResponseMap();
+    /**
+     * Registers a completion for the request. It must be called before the request is
+     * sent, the reader completes it from its observer callback when the response arrives.
+     */
+    default CompletableFuture<Object> responseFuture(String requestId) {
+        return getRequestResponseMap().computeIfAbsent(requestId, k -> new CompletableFuture<>());
+    }
+    default Object getResponse(String requestId) {
+        CompletableFuture<Object> pending = getRequestResponseMap().get(requestId);
+        return pending == null ? null : pending.getNow(null);
+    }
+    /**
+     * Completes a registered request. Responses for requests that were already cleared
+     * (e.g. timed out) are dropped.
+     */
+    default void setResponse(String requestId, Object data) {
+        CompletableFuture<Object> pending = getRequestResponseMap().get(requestId);
+        if (pending != null) {
+            pending.complete(data);
         }
     }
+    default void clearResponse(String requestId) {
+        getRequestResponseMap().remove(requestId);
+    }
 }
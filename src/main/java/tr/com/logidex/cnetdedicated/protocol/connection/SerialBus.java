@@ -0,0 +1,448 @@
+package tr.com.logidex.cnetdedicated.protocol.connection;
+import com.fazecast.jSerialComm.SerialPort;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+/**
+ * One RS-485 port shared by several Cnet stations.
+ * <p>
+ * Every station client gets its own {@link SerialBusConnection}; their requests are queued per
+ * station and a single scheduler thread puts them on the wire in round-robin order, one request
+ * at a time. After each response (or timeout) the bus stays quiet for the configured turnaround
+ * time before the next station is addressed. A response is only accepted from the station that was
+ * addressed, so a late answer after a timeout cannot end up in another station's tags.
+ */
+public class SerialBus implements SerialReader.SerialReaderObserver {
+    private static final Logger logger = Logger.getLogger(SerialBus.class.getName());
+    private static final long RESPONSE_TIMEOUT_MS = 3000;
+    private static final Map<String, SerialBus> buses = new ConcurrentHashMap<>();
+    private static final ReentrantLock busesLock = new ReentrantLock();
+    private final String portName;
+    private final int baudRate;
+    private final SerialPort serialPort;
+    private final SerialReader serialReader;
+    private final CopyOnWriteArrayList<Station> stations = new CopyOnWriteArrayList<>();
+    private final Semaphore queuedRequests = new Semaphore(0);
+    private volatile int turnaroundMs;
+    private volatile InFlight inFlight;
+    private volatile boolean running;
+    private Thread schedulerThread;
+    private int cursor; // Yalnızca scheduler thread'i kullanır
+
+
+    private SerialBus(SerialConnectionParams params) {
+        this.portName = params.getPortName();
+        this.baudRate = params.getBaudRate();
+        this.turnaroundMs = params.getTurnaroundMs();
+        this.serialPort = SerialConnection.configurePort(params);
+        this.serialReader = new SerialReader(serialPort, this);
+    }
+
+
+    /**
+     * Adds a station to the bus of the given port, opening the port for the first station.
+     */
+    static Station attach(SerialConnectionParams params, SerialReader.SerialReaderObserver observer) throws IOException {
+        busesLock.lock();
+        try {
+            SerialBus bus = buses.get(params.getPortName());
+            if (bus == null) {
+                bus = new SerialBus(params);
+                if (!bus.open()) {
+                    throw new IOException("Seri port açılamadı: " + params.getPortName());
+                }
+                buses.put(params.getPortName(), bus);
+            } else if (bus.baudRate != params.getBaudRate()) {
+                throw new IOException("Port " + params.getPortName() + " is already open at " + bus.baudRate + " baud");
+            }
+            return bus.addStation(params, observer);
+        } finally {
+            busesLock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns the bus currently open on the port, or null.
+     */
+    public static SerialBus getBus(String portName) {
+        return buses.get(portName);
+    }
+
+
+    private boolean open() {
+        if (!serialPort.openPort()) {
+            return false;
+        }
+        running = true;
+        schedulerThread = new Thread(this::schedule, "SerialBus-" + portName);
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+        return true;
+    }
+
+
+    private Station addStation(SerialConnectionParams params, SerialReader.SerialReaderObserver observer) throws IOException {
+        for (Station station : stations) {
+            if (station.stationNumber == params.getStationNumber()) {
+                throw new IOException("Station " + params.getStationNumber() + " is already connected on " + portName);
+            }
+        }
+        // Hattaki en yavaş cihazın dönüş süresi geçerli olur
+        turnaroundMs = Math.max(turnaroundMs, params.getTurnaroundMs());
+        Station station = new Station(this, params.getStationNumber(), observer);
+        stations.add(station);
+        return station;
+    }
+
+
+    private void detach(Station station) {
+        busesLock.lock();
+        try {
+            if (!stations.remove(station)) {
+                return;
+            }
+            station.failQueued(new IOException("Station " + station.stationNumber + " disconnected from the bus"));
+            if (stations.isEmpty()) {
+                close();
+                buses.remove(portName, this);
+            }
+        } finally {
+            busesLock.unlock();
+        }
+    }
+
+
+    private void close() {
+        running = false;
+        if (schedulerThread != null) {
+            schedulerThread.interrupt();
+            schedulerThread = null;
+        }
+        serialPort.closePort();
+    }
+
+
+    public boolean isOpen() {
+        return running && serialPort.isOpen();
+    }
+
+
+    public int getTurnaroundMs() {
+        return turnaroundMs;
+    }
+
+
+    /**
+     * Per-station statistics keyed by station number.
+     */
+    public Map<Integer, StationStatistics> getStationStatistics() {
+        Map<Integer, StationStatistics> result = new LinkedHashMap<>();
+        for (Station station : stations) {
+            result.put(station.stationNumber, station.statistics);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+
+    private void submit(Request request) {
+        request.station.queue.add(request);
+        queuedRequests.release();
+    }
+
+
+    private void schedule() {
+        while (running) {
+            try {
+                queuedRequests.acquire();
+            } catch (InterruptedException e) {
+                break;
+            }
+            Request next = nextRoundRobin();
+            if (next == null) {
+                continue; // İstek sırasını beklerken iptal edilmiş
+            }
+            try {
+                transmit(next);
+                // Hattın yön değiştirmesi için bekle
+                if (turnaroundMs > 0) {
+                    Thread.sleep(turnaroundMs);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+
+    /**
+     * Picks the next request, starting after the station served last so that every station
+     * gets one request on the wire per round.
+     */
+    private Request nextRoundRobin() {
+        Object[] snapshot = stations.toArray();
+        for (int i = 0; i < snapshot.length; i++) {
+            int index = (cursor + i) % snapshot.length;
+            Request request = ((Station) snapshot[index]).queue.poll();
+            if (request != null) {
+                cursor = index + 1;
+                return request;
+            }
+        }
+        return null;
+    }
+
+
+    private void transmit(Request request) throws InterruptedException {
+        Station station = request.station;
+        InFlight current = new InFlight(request);
+        inFlight = current;
+        long start = System.nanoTime();
+        station.statistics.requests.incrementAndGet();
+        try {
+            serialReader.sendRequest(request.frame, request.requestId);
+            current.done.get(RESPONSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            serialReader.clearResponse(request.requestId);
+            station.fail(request.requestId, e);
+        } catch (TimeoutException e) {
+            serialReader.clearResponse(request.requestId);
+            station.statistics.timeouts.incrementAndGet();
+            logger.warning("Station " + station.stationNumber + " did not answer on " + portName);
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Unexpected bus error", e);
+        } finally {
+            inFlight = null;
+            station.statistics.busTimeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+
+    @Override
+    public void onDataReceived(String data, String requestId) {
+        InFlight current = inFlight;
+        if (current == null || !current.request.requestId.equals(requestId)) {
+            return;
+        }
+        Station station = current.request.station;
+        if (stationNumberOf(data) != station.stationNumber) {
+            logger.warning("Response of another station dropped while waiting for station " + station.stationNumber + ": " + data);
+            return;
+        }
+        station.statistics.responses.incrementAndGet();
+        station.statistics.responseBytes.addAndGet(data.length());
+        station.observer.onDataReceived(data, requestId);
+        current.done.complete(null);
+    }
+
+
+    /**
+     * Station number after ACK/NAK (2 decimal digits), or -1 if the frame is too short
+     */
+    private static int stationNumberOf(String response) {
+        if (response.length() < 3) {
+            return -1;
+        }
+        int tens = Character.digit(response.charAt(1), 10);
+        int ones = Character.digit(response.charAt(2), 10);
+        return tens < 0 || ones < 0 ? -1 : tens * 10 + ones;
+    }
+
+
+    /**
+     * The shared port is gone, every station on it has lost its connection. The bus is closed and
+     * forgotten, so the next {@link #attach} after a reconnect opens the port again.
+     */
+    @Override
+    public void onConnectionLost(Throwable cause) {
+        Object[] lost;
+        busesLock.lock();
+        try {
+            lost = stations.toArray();
+            stations.clear();
+            close();
+            buses.remove(portName, this);
+        } finally {
+            busesLock.unlock();
+        }
+        for (Object entry : lost) {
+            Station station = (Station) entry;
+            station.observer.onConnectionLost(cause);
+            station.failQueued(new IOException("Serial port " + portName + " disconnected", cause));
+        }
+    }
+
+
+    private static final class Request {
+        private final Station station;
+        private final String frame;
+        private final String requestId;
+
+
+        private Request(Station station, String frame, String requestId) {
+            this.station = station;
+            this.frame = frame;
+            this.requestId = requestId;
+        }
+    }
+
+
+    private static final class InFlight {
+        private final Request request;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+
+        private InFlight(Request request) {
+            this.request = request;
+        }
+    }
+
+
+    /**
+     * One station on the bus. It is the response reader of its {@link SerialBusConnection}.
+     */
+    static final class Station implements ResponseReader {
+        private final SerialBus bus;
+        private final int stationNumber;
+        private final SerialReader.SerialReaderObserver observer;
+        private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<>();
+        private final ConcurrentHashMap<String, CompletableFuture<Object>> requestResponseMap = new ConcurrentHashMap<>();
+        private final StationStatistics statistics = new StationStatistics();
+        private volatile boolean attached = true;
+
+
+        private Station(SerialBus bus, int stationNumber, SerialReader.SerialReaderObserver observer) {
+            this.bus = bus;
+            this.stationNumber = stationNumber;
+            this.observer = observer;
+        }
+
+
+        @Override
+        public void sendRequest(String request, String requestId) throws IOException {
+            if (!isAttached()) {
+                throw new IOException("Bağlantı kapalı. Önce connect() metodu ile bağlantı kurun.");
+            }
+            bus.submit(new Request(this, request, requestId));
+        }
+
+
+        @Override
+        public ConcurrentHashMap<String, CompletableFuture<Object>> getRequestResponseMap() {
+            return requestResponseMap;
+        }
+
+
+        /**
+         * Drops the response and, if the request is still waiting for its turn, removes it from the queue.
+         */
+        @Override
+        public void clearResponse(String requestId) {
+            requestResponseMap.remove(requestId);
+            queue.removeIf(request -> request.requestId.equals(requestId));
+        }
+
+
+        private void fail(String requestId, Throwable error) {
+            CompletableFuture<Object> pending = requestResponseMap.get(requestId);
+            if (pending != null) {
+                pending.completeExceptionally(error);
+            }
+        }
+
+
+        private void failQueued(Throwable error) {
+            Request request;
+            while ((request = queue.poll()) != null) {
+                fail(request.requestId, error);
+            }
+        }
+
+
+        boolean isAttached() {
+            return attached && bus.isOpen();
+        }
+
+
+        void detach() {
+            attached = false;
+            bus.detach(this);
+        }
+
+
+        StationStatistics getStatistics() {
+            return statistics;
+        }
+    }
+
+
+    /**
+     * Throughput counters of one station.
+     */
+    public static final class StationStatistics {
+        private final long createdNanos = System.nanoTime();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong responses = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final AtomicLong busTimeNanos = new AtomicLong();
+
+
+        public long getRequestCount() {
+            return requests.get();
+        }
+
+
+        public long getResponseCount() {
+            return responses.get();
+        }
+
+
+        public long getTimeoutCount() {
+            return timeouts.get();
+        }
+
+
+        public long getResponseBytes() {
+            return responseBytes.get();
+        }
+
+
+        /**
+         * Total time the bus spent on this station's requests, including timeouts.
+         */
+        public long getBusTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(busTimeNanos.get());
+        }
+
+
+        /**
+         * Answered requests per second since the station joined the bus.
+         */
+        public double getResponsesPerSecond() {
+            double seconds = (System.nanoTime() - createdNanos) / 1_000_000_000.0;
+            return seconds <= 0 ? 0 : responses.get() / seconds;
+        }
+
+
+        @Override
+        public String toString() {
+            return "requests=" + getRequestCount() + ", responses=" + getResponseCount() + ", timeouts=" + getTimeoutCount()
+                    + ", busTime=" + getBusTimeMillis() + "ms, rate=" + String.format("%.1f", getResponsesPerSecond()) + "/s";
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package tr.com.logidex.cnetdedicated.protocol.connection;
+import java.io.IOException;
+/**
+ * Connection of one Cnet station on a shared RS-485 bus.
+ * Requests are handed to the {@link SerialBus} of the port, which interleaves them with the
+ * requests of the other stations.
+ */
+public class SerialBusConnection implements Connection {
+    private final SerialConnectionParams params;
+    private final SerialReader.SerialReaderObserver observer;
+    private volatile SerialBus.Station station;
+
+
+    public SerialBusConnection(SerialConnectionParams params, SerialReader.SerialReaderObserver observer) {
+        this.params = params;
+        this.observer = observer;
+    }
+
+
+    @Override
+    public boolean connect() throws IOException {
+        station = SerialBus.attach(params, observer);
+        return true;
+    }
+
+
+    @Override
+    public void disconnect() {
+        SerialBus.Station current = station;
+        if (current != null) {
+            current.detach();
+        }
+    }
+
+
+    @Override
+    public boolean isConnected() {
+        SerialBus.Station current = station;
+        return current != null && current.isAttached();
+    }
+
+
+    @Override
+    public void sendRequest(String requestMessage, String requestId) throws IOException {
+        SerialBus.Station current = station;
+        if (current == null) {
+            throw new IOException("Bağlantı kapalı. Önce connect() metodu ile bağlantı kurun.");
+        }
+        current.sendRequest(requestMessage, requestId);
+    }
+
+
+    @Override
+    public void sendRequest(byte[] requestMessage, String requestId) throws IOException {
+        throw new UnsupportedOperationException("Serial connection does not support binary protocol");
+    }
+
+
+    @Override
+    public ResponseReader getResponseReader() {
+        return station;
+    }
+
+
+    @Override
+    public boolean isBinaryProtocol() {
+        return false;
+    }
+
+
+    /**
+     * Request/response counters of this station, or null before the first connect.
+     */
+    public SerialBus.StationStatistics getStatistics() {
+        SerialBus.Station current = station;
+        return current == null ? null : current.getStatistics();
+    }
+}
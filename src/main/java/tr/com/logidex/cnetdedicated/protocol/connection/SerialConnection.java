@@ -8,16 +8,27 @@ public class SerialConnection implements Connection {
     private SerialPort serialPort;
     private SerialReader serialReader;
     public SerialConnection(SerialConnectionParams params) {
-        serialPort = SerialPort.getCommPort(params.getPortName());
-        serialPort.setBaudRate(params.getBaudRate());
-        serialPort.setParity(parityValueOf(params.getParity()));
-        serialPort.setNumDataBits(params.getDataBits());
-        serialPort.setNumStopBits(params.getStopBits());
-        serialReader = new SerialReader(serialPort, XGBCNetClient.getInstance());
+        this(params, XGBCNetClient.getInstance());
     }
 
 
-    private int parityValueOf(Parity parity) {
+    public SerialConnection(SerialConnectionParams params, SerialReader.SerialReaderObserver observer) {
+        serialPort = configurePort(params);
+        serialReader = new SerialReader(serialPort, observer);
+    }
+
+
+    static SerialPort configurePort(SerialConnectionParams params) {
+        SerialPort port = SerialPort.getCommPort(params.getPortName());
+        port.setBaudRate(params.getBaudRate());
+        port.setParity(parityValueOf(params.getParity()));
+        port.setNumDataBits(params.getDataBits());
+        port.setNumStopBits(params.getStopBits());
+        return port;
+    }
+
+
+    private static int parityValueOf(Parity parity) {
         int intParity = 0;
         switch (parity) {
             case odd:
@@ -6,6 +6,12 @@ public class SerialConnectionParams extends ConnectionParams {
     private Parity parity = Parity.none;
     private int dataBits = 8;
     private int stopBits = 1;
+    private boolean multiDrop = false;
+    private int turnaroundMs = DEFAULT_TURNAROUND_MS;
+    /**
+     * Default quiet time on an RS-485 bus between a response and the next request.
+     */
+    public static final int DEFAULT_TURNAROUND_MS = 5;
 
 
     public SerialConnectionParams(String portName, int baudRate, Parity parity, int dataBits, int
@@ -44,6 +50,36 @@ public class SerialConnectionParams extends ConnectionParams {
     }
 
 
+    public boolean isMultiDrop() {
+        return multiDrop;
+    }
+
+
+    /**
+     * @param multiDrop true when several stations share this port (RS-485). Clients connecting with the
+     *                  same port name then share one {@link SerialBus} instead of opening the port themselves.
+     */
+    public void setMultiDrop(boolean multiDrop) {
+        this.multiDrop = multiDrop;
+    }
+
+
+    public int getTurnaroundMs() {
+        return turnaroundMs;
+    }
+
+
+    /**
+     * @param turnaroundMs how long the bus stays quiet after a response (or timeout) before the next request is sent
+     */
+    public void setTurnaroundMs(int turnaroundMs) {
+        if (turnaroundMs < 0) {
+            throw new IllegalArgumentException("Turnaround time cannot be negative");
+        }
+        this.turnaroundMs = turnaroundMs;
+    }
+
+
     @Override
     public String toString() {
         return " Port: " + portName + ", " + " Baudrate: " + baudRate + ", " + " Parity: " + parity + ", " + " Databits: " + dataBits + ", " + " Stopbits: " + stopBits + ", " + " Station number: " + getStationNumber();
@@ -4,45 +4,92 @@ import com.fazecast.jSerialComm.SerialPortDataListener;
 import com.fazecast.jSerialComm.SerialPortEvent;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Logger;
+/**
+ * Reads Cnet response frames from the serial port.
+ * <p>
+ * Incoming bytes are copied into a fixed ring buffer and scanned once by a small state machine
+ * (ACK/NAK ... ETX + 2 BCC characters), so each data event only looks at the bytes it added.
+ * A String is created only when a complete frame is handed to the observer.
+ * <p>
+ * Frames are matched to requests in the order they were sent, but only if the station number after
+ * ACK/NAK is the one the oldest pending request was addressed to; a late answer of a request that
+ * already timed out is dropped instead of being handed to the next request.
+ */
 public class SerialReader implements ResponseReader {
     private static final Logger logger = Logger.getLogger(SerialReader.class.getName());
+    private static final byte ENQ = 0x05;
+    private static final byte EOT = 0x04;
+    private static final byte ACK = 0x06;
+    private static final byte NAK = 0x15;
+    private static final byte ETX = 0x03;
+    private static final int BCC_LENGTH = 2;
+    private static final int RING_SIZE = 4096; // Cnet'in en uzun cevabından büyük, 2'nin kuvveti
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final int READ_CHUNK_SIZE = 512;
     private SerialPort serialPort;
     private SerialReaderObserver observer;
-    private ConcurrentHashMap<String, Object> requestResponseMap = new ConcurrentHashMap<>();
-    private ConcurrentLinkedQueue<String> requestQueue = new ConcurrentLinkedQueue<>();
-    private StringBuilder responseBuffer = new StringBuilder(); // Tampon için StringBuilder
+    private ConcurrentHashMap<String, CompletableFuture<Object>> requestResponseMap = new ConcurrentHashMap<>();
+    private ConcurrentLinkedQueue<PendingRequest> requestQueue = new ConcurrentLinkedQueue<>();
+    // Zaman aşımından sonra yarım kalmış frame atılsın diye olay thread'ine işaret
+    private volatile boolean resyncRequested;
+    // Aşağıdaki alanlara yalnızca jSerialComm olay thread'i erişir
+    private final byte[] readChunk = new byte[READ_CHUNK_SIZE];
+    private final byte[] ring = new byte[RING_SIZE];
+    private final byte[] frameScratch = new byte[RING_SIZE];
+    private long frameStart; // Ring içindeki frame başlangıcı (mutlak sayaç)
+    private long writeIndex; // Ring'e yazılan toplam byte
+    private FrameState state = FrameState.HUNTING;
+    private int bccRemaining;
+
+
+    private enum FrameState {
+        HUNTING,    // ACK/NAK (veya yankılanan ENQ) bekleniyor
+        BODY,       // ETX bekleniyor
+        BCC,        // ETX'ten sonraki 2 BCC karakteri bekleniyor
+        ECHO        // Hatta yankılanan istek frame'i, EOT'a kadar atlanıyor
+    }
+
+
     public SerialReader(SerialPort serialPort, SerialReaderObserver observer) {
         this.serialPort = serialPort;
         this.observer = observer;
         this.serialPort.addDataListener(new SerialPortDataListener() {
             @Override
             public int getListeningEvents() {
-                return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
+                return SerialPort.LISTENING_EVENT_DATA_AVAILABLE | SerialPort.LISTENING_EVENT_PORT_DISCONNECTED;
             }
 
 
             @Override
             public void serialEvent(SerialPortEvent event) {
+                if (event.getEventType() == SerialPort.LISTENING_EVENT_PORT_DISCONNECTED) {
+                    logger.warning("Seri port bağlantısı koptu");
+                    state = FrameState.HUNTING; // Yarım kalan frame atılır
+                    if (observer != null) {
+                        observer.onConnectionLost(new IOException("Serial port disconnected"));
+                    }
+                    return;
+                }
                 if (event.getEventType() != SerialPort.LISTENING_EVENT_DATA_AVAILABLE) {
                     return;
                 }
-                byte[] buffer = new byte[serialPort.bytesAvailable()];
-                int numRead = serialPort.readBytes(buffer, buffer.length);
-                String responsePart = new String(buffer);
-                responseBuffer.append(responsePart); // Gelen parçayı tampona ekle
-                // System.out.println("Response buffer:" + responseBuffer);
-                // Tam mesajın sonunu belirlemek için ETX (0x03) karakterini ve ardından iki hex karakteri kontrol et
-                String currentBuffer = responseBuffer.toString();
-                int etxIndex = currentBuffer.indexOf((char) 0x03);
-                if (etxIndex != -1 && currentBuffer.length() >= etxIndex + 3) {
-                    String completeResponse = currentBuffer.substring(0, etxIndex + 3);
-                    responseBuffer.delete(0, etxIndex + 3); // Tamponu temizle
-                    String requestId = requestQueue.poll(); // Cevap için sıradaki istek kimliğini al
-                    if (observer != null && requestId != null) {
-                        observer.onDataReceived(completeResponse, requestId);
+                if (resyncRequested) {
+                    resyncRequested = false;
+                    state = FrameState.HUNTING;
+                }
+                int available;
+                while ((available = serialPort.bytesAvailable()) > 0) {
+                    int numRead = serialPort.readBytes(readChunk, Math.min(available, READ_CHUNK_SIZE));
+                    if (numRead <= 0) {
+                        return;
+                    }
+                    for (int i = 0; i < numRead; i++) {
+                        accept(readChunk[i]);
                     }
                 }
             }
@@ -50,8 +97,87 @@ public class SerialReader implements ResponseReader {
     }
 
 
+    /**
+     * Feeds one received byte to the frame state machine.
+     */
+    private void accept(byte b) {
+        switch (state) {
+            case HUNTING:
+                if (b == ACK || b == NAK) {
+                    frameStart = writeIndex;
+                    store(b);
+                    state = FrameState.BODY;
+                } else if (b == ENQ) {
+                    state = FrameState.ECHO;
+                }
+                // Frame dışındaki diğer byte'lar atılır
+                break;
+            case BODY:
+                if (writeIndex - frameStart >= RING_SIZE - BCC_LENGTH) {
+                    logger.warning("Cnet frame tampondan büyük, atlanıyor: " + (writeIndex - frameStart) + " bytes");
+                    state = FrameState.HUNTING;
+                    accept(b);
+                    return;
+                }
+                store(b);
+                if (b == ETX) {
+                    bccRemaining = BCC_LENGTH;
+                    state = FrameState.BCC;
+                }
+                break;
+            case BCC:
+                store(b);
+                if (--bccRemaining == 0) {
+                    state = FrameState.HUNTING;
+                    dispatchFrame();
+                }
+                break;
+            case ECHO:
+                if (b == EOT) {
+                    state = FrameState.HUNTING;
+                }
+                break;
+        }
+    }
+
+
+    private void store(byte b) {
+        ring[(int) (writeIndex++ & RING_MASK)] = b;
+    }
+
+
+    private void dispatchFrame() {
+        int length = (int) (writeIndex - frameStart);
+        int from = (int) (frameStart & RING_MASK);
+        String completeResponse;
+        if (from + length <= RING_SIZE) {
+            completeResponse = new String(ring, from, length, StandardCharsets.ISO_8859_1);
+        } else {
+            // Frame ring'in sonundan başa sarmış
+            int firstPart = RING_SIZE - from;
+            System.arraycopy(ring, from, frameScratch, 0, firstPart);
+            System.arraycopy(ring, 0, frameScratch, firstPart, length - firstPart);
+            completeResponse = new String(frameScratch, 0, length, StandardCharsets.ISO_8859_1);
+        }
+        PendingRequest pending = requestQueue.peek();
+        if (pending == null) {
+            logger.fine("Beklenmeyen Cnet cevabı atlandı: " + completeResponse);
+            return;
+        }
+        if (pending.station != null && !completeResponse.startsWith(pending.station, 1)) {
+            // Zaman aşımına uğramış başka bir isteğin geç gelen cevabı
+            logger.warning("İstasyon numarası uyuşmayan cevap atlandı, beklenen " + pending.station + ": " + completeResponse);
+            return;
+        }
+        requestQueue.remove(pending); // Cevap için sıradaki istek kimliğini al
+        if (observer != null) {
+            observer.onDataReceived(completeResponse, pending.requestId);
+        }
+    }
+
+
     public void sendRequest(String request, String requestId) throws IOException {
-        requestQueue.add(requestId);
+        requestQueue.add(new PendingRequest(requestId, stationOf(request)));
         int wrote = serialPort.writeBytes(request.getBytes(), request.length());
         if (wrote == -1) {
             throw new IOException("Error while sending request frame!");
@@ -59,24 +185,57 @@ public class SerialReader implements ResponseReader {
     }
 
 
-    public Object getResponse(String requestId) {
-        return requestResponseMap.get(requestId);
+    @Override
+    public ConcurrentHashMap<String, CompletableFuture<Object>> getRequestResponseMap() {
+        return requestResponseMap;
     }
 
 
-    public void setResponse(String requestId, Object response) {
-        requestResponseMap.put(requestId, response);
+    /**
+     * 2 digit station number of an ENQ request frame, or null if the frame has none
+     */
+    static String stationOf(String request) {
+        if (request.length() < 3 || request.charAt(0) != ENQ) {
+            return null;
+        }
+        return request.substring(1, 3);
     }
 
 
+    /**
+     * Drops the pending completion and, if the request was never answered, its place in the
+     * queue so that the next frame is not handed to a request that already timed out. A frame
+     * that was half received at that point is discarded.
+     */
     @Override
-    public ConcurrentHashMap<String, Object> getRequestResponseMap() {
-        return requestResponseMap;
+    public void clearResponse(String requestId) {
+        requestResponseMap.remove(requestId);
+        if (requestQueue.removeIf(pending -> pending.requestId.equals(requestId))) {
+            resyncRequested = true;
+        }
+    }
+
+
+    private static final class PendingRequest {
+        private final String requestId;
+        private final String station;
+
+
+        private PendingRequest(String requestId, String station) {
+            this.requestId = requestId;
+            this.station = station;
+        }
     }
 
 
     public interface SerialReaderObserver {
         void onDataReceived(String data, String requestId);
+
+        /**
+         * Called from the jSerialComm event thread when the port disappears (e.g. USB cable unplugged).
+         */
+        default void onConnectionLost(Throwable cause) {
+        }
     }
 }
 
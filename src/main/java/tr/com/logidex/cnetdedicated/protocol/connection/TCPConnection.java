@@ -1,29 +1,35 @@
 package tr.com.logidex.cnetdedicated.protocol.connection;
 import tr.com.logidex.cnetdedicated.app.XGBCNetClient;
 
-import java.io.*;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
 public class TCPConnection implements Connection {
-    private Socket socket;
+    private SocketChannel channel;
     private TCPConnectionParams params;
-    private PrintWriter out;
-    private BufferedReader in;
     private TCPReader tcpReader;
+    private final TCPReader.TCPReaderObserver observer;
 
 
     public TCPConnection(TCPConnectionParams tcpConnectionParams) {
+        this(tcpConnectionParams, XGBCNetClient.getInstance());
+    }
+
+
+    public TCPConnection(TCPConnectionParams tcpConnectionParams, TCPReader.TCPReaderObserver observer) {
         this.params = tcpConnectionParams;
+        this.observer = observer;
     }
 
 
     @Override
     public boolean connect() throws IOException {
-        socket = new Socket(params.getIPAddress(), params.getPort());
-        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        channel = SocketChannel.open();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.connect(new InetSocketAddress(params.getIPAddress(), params.getPort()));
         System.out.println("Bağlantı kuruldu!");
-        tcpReader = new TCPReader(socket, out, XGBCNetClient.getInstance());
+        tcpReader = new TCPReader(channel, observer, params.getPipelineWindow());
         return true;
     }
 
@@ -31,10 +37,8 @@ public class TCPConnection implements Connection {
     @Override
     public void disconnect() {
         try {
-            tcpReader.stopListening();
-            if (out != null) out.close();
-            if (in != null) in.close();
-            if (socket != null && !socket.isClosed()) socket.close();
+            if (tcpReader != null) tcpReader.stopListening();
+            if (channel != null && channel.isOpen()) channel.close();
         } catch (IOException e) {
             System.err.println("Bağlantı kapatılırken hata oluştu: " + e.getMessage());
         }
@@ -43,7 +47,8 @@ public class TCPConnection implements Connection {
 
     @Override
     public boolean isConnected() {
-        return socket != null && socket.isConnected() && !socket.isClosed();
+        return channel != null && channel.isConnected() && channel.isOpen()
+                && tcpReader != null && tcpReader.isListening();
     }
 
 
@@ -65,8 +70,19 @@ public class TCPConnection implements Connection {
     }
 
 
+    TCPReader getTCPReader() {
+        return tcpReader;
+    }
+
+
     @Override
     public boolean isBinaryProtocol() {
         return true; // TCP connection uses FENet binary protocol
     }
+
+
+    @Override
+    public boolean supportsPipelining() {
+        return true; // Responses are matched by invoke ID
+    }
 }
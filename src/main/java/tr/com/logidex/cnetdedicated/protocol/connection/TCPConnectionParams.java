@@ -1,7 +1,17 @@
 package tr.com.logidex.cnetdedicated.protocol.connection;
 public class TCPConnectionParams extends ConnectionParams {
+    /**
+     * Default number of FENet requests that may be outstanding on one socket.
+     */
+    public static final int DEFAULT_PIPELINE_WINDOW = 8;
+    /**
+     * Default number of sockets opened to the PLC. One socket keeps the original behavior.
+     */
+    public static final int DEFAULT_POOL_SIZE = 1;
     private String IPAddress;
     private int Port;
+    private int pipelineWindow = DEFAULT_PIPELINE_WINDOW;
+    private int poolSize = DEFAULT_POOL_SIZE;
 
 
     public TCPConnectionParams(String ipAddress, int port, int stationNumber) {
@@ -11,6 +21,12 @@ public class TCPConnectionParams extends ConnectionParams {
     }
 
 
+    public TCPConnectionParams(String ipAddress, int port, int stationNumber, int pipelineWindow) {
+        this(ipAddress, port, stationNumber);
+        setPipelineWindow(pipelineWindow);
+    }
+
+
     @Override
     public int getStationNumber() {
         return super.getStationNumber();
@@ -27,6 +43,39 @@ public class TCPConnectionParams extends ConnectionParams {
     }
 
 
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+
+    /**
+     * @param pipelineWindow how many requests may be sent before their responses arrive (1 disables pipelining)
+     */
+    public void setPipelineWindow(int pipelineWindow) {
+        if (pipelineWindow < 1) {
+            throw new IllegalArgumentException("Pipeline window must be at least 1");
+        }
+        this.pipelineWindow = pipelineWindow;
+    }
+
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+
+    /**
+     * @param poolSize how many FENet sessions are opened to the same IP and port; requests go to
+     *                 the socket with the fewest outstanding requests
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.poolSize = poolSize;
+    }
+
+
     @Override
     public String toString() {
         return "";
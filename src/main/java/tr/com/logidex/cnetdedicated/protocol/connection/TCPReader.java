@@ -1,167 +1,382 @@
 package tr.com.logidex.cnetdedicated.protocol.connection;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+/**
+ * Non-blocking FENet reader built on a {@link SocketChannel} and a {@link Selector}.
+ * The selector thread sleeps until the socket is readable or a request is queued,
+ * so responses are dispatched as soon as the last byte of a frame arrives.
+ * <p>
+ * Responses are matched to requests by the invoke ID in the FENet header, so up to
+ * {@code pipelineWindow} requests can be outstanding on the socket and may complete
+ * in any order. Requests beyond the window are parked and go out as responses free
+ * their slots, so the sending thread (often the selector thread itself, running a
+ * continuation) never waits for the window.
+ */
 public class TCPReader implements ResponseReader {
     private static final Logger logger = Logger.getLogger(TCPReader.class.getName());
-    private final InputStream in;
-    private final OutputStream out;
-    private Socket socket;
-    private boolean listening = false;
-    private ExecutorService listenerThread;
-    private TCPReader.TCPReaderObserver observer;
-    private ConcurrentHashMap<String, Object> requestResponseMap = new ConcurrentHashMap<>();
-    private ConcurrentLinkedQueue<String> requestQueue = new ConcurrentLinkedQueue<>();
-    private ByteArrayOutputStream binaryResponseBuffer = new ByteArrayOutputStream(); // For binary (FENet) responses
     private static final int FENET_HEADER_LENGTH = 20;
+    private static final int FENET_INVOKE_ID_OFFSET = 14;
+    private static final int FENET_LENGTH_OFFSET = 16;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final TCPReader.TCPReaderObserver observer;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ConcurrentLinkedQueue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ParkedFrame> parked = new ConcurrentLinkedQueue<>();
+    private ConcurrentHashMap<String, CompletableFuture<Object>> requestResponseMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> outstandingByInvokeId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> invokeIdByRequestId = new ConcurrentHashMap<>();
+    private final Semaphore window;
+    private volatile boolean listening = false;
+    private volatile boolean stopRequested = false;
+    private Thread selectorThread;
 
-    public TCPReader(Socket socket, PrintWriter printWriter, TCPReader.TCPReaderObserver observer) throws IOException {
-        this.socket = socket;
+
+    public TCPReader(SocketChannel channel, TCPReader.TCPReaderObserver observer) throws IOException {
+        this(channel, observer, TCPConnectionParams.DEFAULT_PIPELINE_WINDOW);
+    }
+
+
+    public TCPReader(SocketChannel channel, TCPReader.TCPReaderObserver observer, int pipelineWindow) throws IOException {
+        if (pipelineWindow < 1) {
+            throw new IllegalArgumentException("Pipeline window must be at least 1");
+        }
+        this.channel = channel;
         this.observer = observer;
-        this.in = socket.getInputStream();
-        this.out = socket.getOutputStream();
+        this.window = new Semaphore(pipelineWindow);
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
         startListening();
     }
 
 
     /**
      * TCP üzerinden gelen verileri dinlemeye başlar.
-     * FENet binary protocol için optimize edilmiştir.
+     * Selector thread'i yalnızca soket okunabilir/yazılabilir olduğunda uyanır.
      */
     private void startListening() {
         if (listening) {
             return;
         }
         listening = true;
-        binaryResponseBuffer.reset(); // Buffer'ı temizle
-        listenerThread = Executors.newSingleThreadExecutor();
-        listenerThread.submit(() -> {
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            try {
-                while (listening && !socket.isClosed()) {
-                    // Veri var mı kontrol et
-                    if (in.available() > 0) {
-                        bytesRead = in.read(buffer);
-                        if (bytesRead > 0) {
-                            // Alınan verileri binary buffer'a ekle
-                            binaryResponseBuffer.write(buffer, 0, bytesRead);
-
-                            // Debug amaçlı hex formatında yazdır
-                            StringBuilder hexDump = new StringBuilder();
-                            for (int i = 0; i < bytesRead; i++) {
-                                hexDump.append(String.format("%02X ", buffer[i] & 0xFF));
-                            }
-                            System.out.println("Alınan ham veri (HEX): " + hexDump.toString());
-
-                            // FENet frame'inin tamamını kontrol et
-                            if (isFENetFrameComplete(binaryResponseBuffer.toByteArray())) {
-                                byte[] completeResponse = binaryResponseBuffer.toByteArray();
-                                System.out.println("Tam FENet frame alındı: " + completeResponse.length + " bytes");
-
-                                binaryResponseBuffer.reset(); // Tamponu temizle
-                                String requestId = requestQueue.poll(); // Cevap için sıradaki istek kimliğini al
-
-                                if (observer != null && requestId != null) {
-                                    observer.onDataReceived(completeResponse, requestId);
-                                }
-                            }
-                        }
+        readBuffer.clear();
+        selectorThread = new Thread(this::selectLoop, "FENetSelector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+
+    private void selectLoop() {
+        Throwable cause = null;
+        try {
+            while (listening && channel.isOpen()) {
+                SelectionKey channelKey = channel.keyFor(selector);
+                if (channelKey != null && channelKey.isValid()) {
+                    int ops = writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+                    if (channelKey.interestOps() != ops) {
+                        channelKey.interestOps(ops);
                     }
-                    // CPU kullanımını azaltmak için kısa bir bekleme
-                    Thread.sleep(10);
                 }
-            } catch (IOException | InterruptedException e) {
-                if (listening) {
-                    System.err.println("Veri dinleme hatası: " + e.getMessage());
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isWritable()) {
+                        flushWrites();
+                    }
+                    if (key.isReadable() && !readAvailable()) {
+                        listening = false;
+                        cause = new IOException("FENet session closed by the PLC");
+                    }
                 }
             }
-        });
+        } catch (IOException | ClosedSelectorException e) {
+            if (listening) {
+                logger.log(Level.SEVERE, "Veri dinleme hatası: " + e.getMessage());
+            }
+            cause = e;
+        } finally {
+            listening = false;
+        }
+        if (stopRequested) {
+            return;
+        }
+        if (cause == null) {
+            cause = new IOException("FENet session closed");
+        }
+        // Oturum bitti, yeni bağlantı temiz bir akışla başlamalı
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warning("Kanal kapatılırken hata: " + e.getMessage());
+        }
+        if (observer != null) {
+            observer.onConnectionLost(cause);
+        }
+        failOutstanding(cause);
     }
 
+
     /**
-     * FENet frame'inin tam olup olmadığını kontrol eder
+     * Fails every request that is still waiting on this session. Runs after the observer
+     * was notified, so requests it took over for a replay are not affected.
      */
-    private boolean isFENetFrameComplete(byte[] data) {
-        if (data.length < FENET_HEADER_LENGTH) {
-            return false;
+    private void failOutstanding(Throwable cause) {
+        parked.clear();
+        outstandingByInvokeId.clear();
+        invokeIdByRequestId.clear();
+        for (CompletableFuture<Object> pending : requestResponseMap.values()) {
+            pending.completeExceptionally(cause);
         }
+    }
 
-        // Payload uzunluğunu oku (bytes 16-17, little-endian)
-        int payloadLength = ((data[17] & 0xFF) << 8) | (data[16] & 0xFF);
 
-        // Toplam frame uzunluğu = 20 byte header + payload length
-        int expectedLength = FENET_HEADER_LENGTH + payloadLength;
+    /**
+     * Soketteki mevcut baytları okur ve tamamlanan FENet frame'lerini dağıtır.
+     *
+     * @return false if the peer closed the connection
+     */
+    private boolean readAvailable() throws IOException {
+        int bytesRead;
+        while ((bytesRead = channel.read(readBuffer)) > 0) {
+            readBuffer.flip();
+            extractFrames();
+            readBuffer.compact();
+        }
+        return bytesRead != -1;
+    }
+
+
+    /**
+     * Tampondaki tam frame'leri 20 byte'lık başlıktaki uzunluk alanına göre ayırır.
+     * Eksik kalan frame bir sonraki okumaya kadar tamponda bekler.
+     */
+    private void extractFrames() throws IOException {
+        while (readBuffer.remaining() >= FENET_HEADER_LENGTH) {
+            int start = readBuffer.position();
+            // Payload uzunluğu (bytes 16-17, little-endian)
+            int payloadLength = (readBuffer.get(start + FENET_LENGTH_OFFSET) & 0xFF)
+                    | ((readBuffer.get(start + FENET_LENGTH_OFFSET + 1) & 0xFF) << 8);
+            int frameLength = FENET_HEADER_LENGTH + payloadLength;
+            if (frameLength > readBuffer.capacity()) {
+                // Frame sınırı kaybolmuş olabilir, akış bu oturumda yeniden hizalanamaz
+                throw new IOException("FENet frame larger than the read buffer: " + frameLength + " bytes");
+            }
+            if (readBuffer.remaining() < frameLength) {
+                return;
+            }
+            byte[] completeResponse = new byte[frameLength];
+            readBuffer.get(completeResponse);
+            logger.fine("Tam FENet frame alındı: " + frameLength + " bytes");
+            dispatch(completeResponse);
+        }
+    }
 
-        System.out.println("Payload length: " + payloadLength + ", Expected total: " + expectedLength + ", Actual: " + data.length);
 
-        return data.length >= expectedLength;
+    private void dispatch(byte[] completeResponse) {
+        int invokeId = readInvokeId(completeResponse);
+        String requestId = outstandingByInvokeId.remove(invokeId); // Cevabı invoke ID ile eşleştir
+        if (requestId == null) {
+            logger.warning("Beklenmeyen invoke ID ile cevap alındı, atlanıyor: " + invokeId);
+            return;
+        }
+        invokeIdByRequestId.remove(requestId);
+        window.release();
+        sendParked();
+        if (observer != null) {
+            observer.onDataReceived(completeResponse, requestId);
+        }
+    }
+
+
+    private static int readInvokeId(byte[] frame) {
+        return (frame[FENET_INVOKE_ID_OFFSET] & 0xFF) | ((frame[FENET_INVOKE_ID_OFFSET + 1] & 0xFF) << 8);
+    }
+
+
+    private void flushWrites() throws IOException {
+        ByteBuffer pending;
+        while ((pending = writeQueue.peek()) != null) {
+            channel.write(pending);
+            if (pending.hasRemaining()) {
+                return; // Soket tamponu dolu, OP_WRITE ile devam edilecek
+            }
+            writeQueue.poll();
+        }
     }
 
 
     public void stopListening() {
+        stopRequested = true;
         listening = false;
-        if (listenerThread != null) {
-            listenerThread.shutdownNow();
-            listenerThread = null;
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.warning("Selector kapatılırken hata: " + e.getMessage());
+        }
+        if (selectorThread != null) {
+            selectorThread.interrupt();
+            selectorThread = null;
         }
     }
 
 
+    public boolean isListening() {
+        return listening;
+    }
+
+
     public void sendRequest(String request, String requestId) throws IOException {
-        if (!socket.isConnected()) {
-            throw new IOException("Bağlantı kapalı. Önce connect() metodu ile bağlantı kurun.");
-        }
-        System.out.println("Gönderiliyor String (" + requestId + "): " + request);
-        out.write(request.getBytes());
-        out.flush();
-        requestQueue.add(requestId);
+        throw new UnsupportedOperationException("TCP connection only supports the binary FENet protocol");
     }
 
+
     public void sendRequest(byte[] request, String requestId) throws IOException {
-        if (!socket.isConnected()) {
+        if (logger.isLoggable(Level.FINEST)) {
+            StringBuilder hexDump = new StringBuilder();
+            for (byte b : request) {
+                hexDump.append(String.format("%02X ", b & 0xFF));
+            }
+            logger.finest("Gönderiliyor Binary (" + requestId + "): " + hexDump);
+        }
+        if (request.length < FENET_HEADER_LENGTH) {
+            throw new IOException("FENet frame is shorter than its header: " + request.length + " bytes");
+        }
+        enqueue(ByteBuffer.wrap(request), readInvokeId(request), requestId);
+    }
+
+
+    private void enqueue(ByteBuffer frame, int invokeId, String requestId) throws IOException {
+        if (!listening || !channel.isConnected()) {
             throw new IOException("Bağlantı kapalı. Önce connect() metodu ile bağlantı kurun.");
         }
-        // Debug: Print hex dump
-        StringBuilder hexDump = new StringBuilder();
-        for (byte b : request) {
-            hexDump.append(String.format("%02X ", b & 0xFF));
+        if (outstandingByInvokeId.containsKey(invokeId)) {
+            throw new IOException("Invoke ID " + invokeId + " is already outstanding");
+        }
+        // Pencere doluysa beklemeden sıraya al, bir cevap yer açınca gönderilir
+        if (!window.tryAcquire()) {
+            parked.add(new ParkedFrame(frame, invokeId, requestId));
+            sendParked(); // Bu arada bir yer açılmış olabilir
+            return;
+        }
+        if (!write(frame, invokeId, requestId)) {
+            throw new IOException("Invoke ID " + invokeId + " is already outstanding");
         }
-        System.out.println("Gönderiliyor Binary (" + requestId + "): " + hexDump.toString());
-        System.out.println("Binary length: " + request.length + " bytes");
+    }
+
 
-        out.write(request);
-        out.flush();
-        requestQueue.add(requestId);
+    /**
+     * Moves parked frames to the write queue while the window has free slots.
+     */
+    private void sendParked() {
+        while (!parked.isEmpty() && window.tryAcquire()) {
+            ParkedFrame next = parked.poll();
+            if (next == null) {
+                window.release();
+                return;
+            }
+            if (!write(next.frame, next.invokeId, next.requestId)) {
+                CompletableFuture<Object> pending = requestResponseMap.get(next.requestId);
+                if (pending != null) {
+                    pending.completeExceptionally(new IOException("Invoke ID " + next.invokeId + " is already outstanding"));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Queues a frame that holds a window slot.
+     *
+     * @return false if the invoke ID is already outstanding, the slot is released then
+     */
+    private boolean write(ByteBuffer frame, int invokeId, String requestId) {
+        // İstek kimliği, cevap gelmeden önce tabloda olmalı
+        if (outstandingByInvokeId.putIfAbsent(invokeId, requestId) != null) {
+            window.release();
+            return false;
+        }
+        invokeIdByRequestId.put(requestId, invokeId);
+        writeQueue.add(frame);
+        selector.wakeup();
+        return true;
+    }
+
+
+    /**
+     * Number of requests that were sent but not answered yet.
+     */
+    public int getOutstandingCount() {
+        return outstandingByInvokeId.size();
     }
 
 
     @Override
-    public ConcurrentHashMap<String, Object> getRequestResponseMap() {
+    public ConcurrentHashMap<String, CompletableFuture<Object>> getRequestResponseMap() {
         return requestResponseMap;
     }
 
 
-    public Object getResponse(String requestId) {
-        return requestResponseMap.get(requestId);
+    /**
+     * Drops the response and, if the request is still unanswered, frees its pipeline slot.
+     * A request that is still parked is not sent any more.
+     */
+    @Override
+    public void clearResponse(String requestId) {
+        requestResponseMap.remove(requestId);
+        if (parked.removeIf(frame -> frame.requestId.equals(requestId))) {
+            return;
+        }
+        Integer invokeId = invokeIdByRequestId.remove(requestId);
+        if (invokeId != null && outstandingByInvokeId.remove(invokeId, requestId)) {
+            window.release();
+            sendParked();
+        }
     }
 
 
-    public void setResponse(String requestId, Object response) {
-        requestResponseMap.put(requestId, response);
+    /**
+     * A request that waits for a free slot in the pipeline window.
+     */
+    private static final class ParkedFrame {
+        private final ByteBuffer frame;
+        private final int invokeId;
+        private final String requestId;
+
+
+        private ParkedFrame(ByteBuffer frame, int invokeId, String requestId) {
+            this.frame = frame;
+            this.invokeId = invokeId;
+            this.requestId = requestId;
+        }
     }
 
 
     public interface TCPReaderObserver {
         void onDataReceived(Object data, String requestId);
+
+        /**
+         * Called from the selector thread when the peer closes the session or the socket fails.
+         * Not called after {@link TCPReader#stopListening()}.
+         */
+        default void onConnectionLost(Throwable cause) {
+        }
     }
 }
-
@@ -5,15 +5,21 @@ import tr.com.logidex.cnetdedicated.device.Device;
 import tr.com.logidex.cnetdedicated.device.Tag;
 import tr.com.logidex.cnetdedicated.protocol.Command;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * FENet Protocol Frame Builder for LS Electric PLC communication over TCP/IP.
  * FENet uses a binary protocol with a 20-byte header and binary data payload.
+ * <p>
+ * The frame size is known from the tags before encoding, so each frame is encoded in one pass straight
+ * into an array of exactly that size, with the header checksum computed while writing. The transport
+ * sends that array as it is.
  */
 public class FENetFrameBuilder {
 
@@ -36,73 +42,44 @@ public class FENetFrameBuilder {
     private static final byte DATA_TYPE_LWORD = 0x04;
     private static final byte DATA_TYPE_CONTINUOUS = 0x14;
 
+    private static final int HEADER_LENGTH = 20;
+    static final int INVOKE_ID_OFFSET = 14;
+    private static final int LENGTH_OFFSET = 16;
+    private static final int POSITION_INFO_OFFSET = 18;
+    static final int CHECKSUM_OFFSET = 19;
+    /**
+     * Data limit of one continuous read
+     */
+    public static final int MAX_CONTINUOUS_READ_BYTES = 1400;
+    /**
+     * Blocks of one multi-variable read
+     */
+    public static final int MAX_BATCH_BLOCKS = 16;
+    /**
+     * Payload limit of a request or response frame
+     */
+    public static final int MAX_PAYLOAD_BYTES = 1400;
+    private static final int BATCH_PAYLOAD_PREFIX = 6; // Instruction, data type, reserved, block count
+    // XOR of the constant header bytes (company ID .. frame direction)
+    private static final byte HEADER_PREFIX_CHECKSUM = headerPrefixChecksum();
+
     private int frameOrderNo = 0;
-    private int invokeId = 0;
+    // Shared by pipelined callers, every frame must get a distinct invoke ID
+    private final AtomicInteger invokeId = new AtomicInteger();
 
     /**
      * Build a FENet read request frame
      */
     public byte[] buildReadRequest(Tag tag, boolean isContinuous) throws IOException {
-        ByteArrayOutputStream payload = new ByteArrayOutputStream();
-
-        // Write instruction (2 bytes, little-endian)
-        writeShort(payload, INSTRUCTION_READ_REQUEST);
-
-        // Write data type (1 byte)
-        payload.write(isContinuous ? DATA_TYPE_CONTINUOUS : getDataTypeCode(tag.getDataType()));
-
-        // Reserved (1 byte)
-        payload.write(0x00);
-
-        // Number of blocks (2 bytes, little-endian)
-        writeShort(payload, (short) 0x0001);
-
-        // Length of variable name (2 bytes, little-endian)
-        String varName = buildVariableName(tag);
-        writeShort(payload, (short) varName.length());
-
-        // Variable name (ASCII)
-        payload.write(varName.getBytes());
-
-        // Data count (2 bytes, little-endian) - number of items to read
-        writeShort(payload, (short) 0x0001);
-
-        return buildFrame(payload.toByteArray());
+        return toArray(BATCH_PAYLOAD_PREFIX + variableLength(tag), dst -> encodeReadRequest(dst, tag, isContinuous));
     }
 
     /**
      * Build a FENet write request frame
      */
     public byte[] buildWriteRequest(Tag tag, String hexValue) throws IOException {
-        ByteArrayOutputStream payload = new ByteArrayOutputStream();
-
-        // Write instruction (2 bytes, little-endian)
-        writeShort(payload, INSTRUCTION_WRITE_REQUEST);
-
-        // Write data type (1 byte)
-        payload.write(getDataTypeCode(tag.getDataType()));
-
-        // Reserved (1 byte)
-        payload.write(0x00);
-
-        // Number of blocks (2 bytes, little-endian)
-        writeShort(payload, (short) 0x0001);
-
-        // Length of variable name (2 bytes, little-endian)
-        String varName = buildVariableName(tag);
-        writeShort(payload, (short) varName.length());
-
-        // Variable name (ASCII)
-        payload.write(varName.getBytes());
-
-        // Data count (2 bytes, little-endian)
-        writeShort(payload, (short) 0x0001);
-
-        // Write the data value
-        byte[] dataBytes = hexStringToBytes(hexValue, tag.getDataType());
-        payload.write(dataBytes);
-
-        return buildFrame(payload.toByteArray());
+        int payloadLength = BATCH_PAYLOAD_PREFIX + variableLength(tag) + getDataLength(tag.getDataType());
+        return toArray(payloadLength, dst -> encodeWriteRequest(dst, tag, hexValue));
     }
 
     /**
@@ -110,34 +87,7 @@ public class FENetFrameBuilder {
      * FENet doesn't use registration numbers like Cnet - it reads multiple blocks directly
      */
     public byte[] buildBatchReadRequest(List<Tag> tags) throws IOException {
-        ByteArrayOutputStream payload = new ByteArrayOutputStream();
-
-        // Write instruction (2 bytes, little-endian) - Read Request
-        writeShort(payload, INSTRUCTION_READ_REQUEST);
-
-        // Write data type (1 byte) - use individual type for batch
-        payload.write(0x00); // Will specify per-block
-
-        // Reserved (1 byte)
-        payload.write(0x00);
-
-        // Number of blocks (2 bytes, little-endian) - number of variables to read
-        writeShort(payload, (short) tags.size());
-
-        // For each tag, add a read block
-        for (Tag tag : tags) {
-            // Length of variable name (2 bytes, little-endian)
-            String varName = buildVariableName(tag);
-            writeShort(payload, (short) varName.length());
-
-            // Variable name (ASCII)
-            payload.write(varName.getBytes());
-
-            // Data count (2 bytes, little-endian) - number of items to read (1 for single value)
-            writeShort(payload, (short) 0x0001);
-        }
-
-        return buildFrame(payload.toByteArray());
+        return toArray(batchReadPayloadLength(tags), dst -> encodeBatchReadRequest(dst, tags));
     }
 
     /**
@@ -150,148 +100,291 @@ public class FENetFrameBuilder {
     }
 
     /**
-     * Build complete FENet frame with 20-byte header
+     * Encode a read request frame at the current position of {@code dst}.
+     *
+     * @return the frame length in bytes
+     * @throws java.nio.BufferOverflowException if the frame does not fit into {@code dst}
      */
-    private byte[] buildFrame(byte[] payload) throws IOException {
-        ByteArrayOutputStream frame = new ByteArrayOutputStream();
-
-        // Company ID (10 bytes) - "LSIS-XGT" + 2 null bytes
-        frame.write(COMPANY_ID);
-
-        // PLC Info (2 bytes)
-        frame.write(PLC_INFO);
+    private int encodeReadRequest(ByteBuffer dst, Tag tag, boolean isContinuous) {
+        int start = beginFrame(dst);
+        dst.putShort(INSTRUCTION_READ_REQUEST);
+        dst.put(isContinuous ? DATA_TYPE_CONTINUOUS : getDataTypeCode(tag.getDataType()));
+        dst.put((byte) 0x00); // Reserved
+        dst.putShort((short) 0x0001); // Number of blocks
+        putVariable(dst, tag);
+        return endFrame(dst, start);
+    }
 
-        // CPU Info (1 byte)
-        frame.write(CPU_INFO);
+    /**
+     * Encode a write request frame at the current position of {@code dst}.
+     *
+     * @return the frame length in bytes
+     * @see #encodeReadRequest(ByteBuffer, Tag, boolean)
+     */
+    private int encodeWriteRequest(ByteBuffer dst, Tag tag, String hexValue) {
+        int start = beginFrame(dst);
+        dst.putShort(INSTRUCTION_WRITE_REQUEST);
+        dst.put(getDataTypeCode(tag.getDataType()));
+        dst.put((byte) 0x00); // Reserved
+        dst.putShort((short) 0x0001); // Number of blocks
+        putVariable(dst, tag);
+        putHexValue(dst, hexValue, tag.getDataType());
+        return endFrame(dst, start);
+    }
 
-        // Frame Direction (1 byte) - 0x33 for request
-        frame.write(FRAME_DIRECTION_REQUEST);
+    /**
+     * Encode a batch read request frame, one block per tag, at the current position of {@code dst}.
+     *
+     * @return the frame length in bytes
+     * @see #encodeReadRequest(ByteBuffer, Tag, boolean)
+     */
+    private int encodeBatchReadRequest(ByteBuffer dst, List<Tag> tags) {
+        int start = beginFrame(dst);
+        putBatchReadPayload(dst, tags);
+        return endFrame(dst, start);
+    }
 
-        // Invoke ID / Frame Order No (2 bytes, little-endian)
-        invokeId = (invokeId + 1) % 65536;
-        writeShort(frame, (short) invokeId);
+    /**
+     * Encode a batch read request once, for a group that is polled repeatedly.
+     * Use {@link #buildFromTemplate} for each poll.
+     */
+    public FENetFrameTemplate compileBatchReadRequest(List<Tag> tags) {
+        return new FENetFrameTemplate(toArray(batchReadPayloadLength(tags), dst -> {
+            int start = beginFrame(dst);
+            putBatchReadPayload(dst, tags);
+            return endFrame(dst, start, 0);
+        }));
+    }
 
-        // Length (2 bytes, little-endian) - length of payload
-        writeShort(frame, (short) payload.length);
+    /**
+     * Encode a continuous read of {@code wordCount} words starting at a word address, once for repeated polls.
+     * Continuous access is byte addressed in FENet, so D100 is requested as {@code %DB200}.
+     */
+    public FENetFrameTemplate compileContinuousReadRequest(Device device, int startWord, int wordCount) {
+        byte[] varName = ("%" + device + "B" + startWord * 2).getBytes(StandardCharsets.US_ASCII);
+        int payloadLength = BATCH_PAYLOAD_PREFIX + 2 + varName.length + 2;
+        return new FENetFrameTemplate(toArray(payloadLength, dst -> {
+            int start = beginFrame(dst);
+            dst.putShort(INSTRUCTION_READ_REQUEST);
+            dst.put(DATA_TYPE_CONTINUOUS);
+            dst.put((byte) 0x00); // Reserved
+            dst.putShort((short) 0x0001); // Number of blocks
+            dst.putShort((short) varName.length);
+            dst.put(varName);
+            dst.putShort((short) (wordCount * 2)); // Byte count
+            return endFrame(dst, start, 0);
+        }));
+    }
 
-        // Position Info (1 byte)
-        frame.write(POSITION_INFO);
+    /**
+     * Copy of the template with the next invoke ID
+     */
+    public byte[] buildFromTemplate(FENetFrameTemplate template) {
+        return template.instantiate(nextInvokeId());
+    }
 
-        // Checksum (1 byte) - XOR of all previous bytes
-        byte[] headerAndPayload = frame.toByteArray();
-        byte checksum = calculateChecksum(headerAndPayload);
-        frame.write(checksum);
+    /**
+     * Packs the tags, in order, into as few batch reads as the block and payload limits allow.
+     * Both the request (variable names) and the expected response (block headers and data) must fit.
+     */
+    public List<List<Tag>> splitBatchRead(List<Tag> tags) {
+        List<List<Tag>> chunks = new ArrayList<>();
+        int from = 0;
+        int requestBytes = BATCH_PAYLOAD_PREFIX;
+        int responseBytes = BATCH_PAYLOAD_PREFIX;
+        for (int i = 0; i < tags.size(); i++) {
+            Tag tag = tags.get(i);
+            int requestBlock = 4 + tag.getVariableNameBytes().length;
+            int responseBlock = 4 + getDataLength(tag.getDataType());
+            if (i > from && (i - from == MAX_BATCH_BLOCKS
+                    || requestBytes + requestBlock > MAX_PAYLOAD_BYTES
+                    || responseBytes + responseBlock > MAX_PAYLOAD_BYTES)) {
+                chunks.add(tags.subList(from, i));
+                from = i;
+                requestBytes = BATCH_PAYLOAD_PREFIX;
+                responseBytes = BATCH_PAYLOAD_PREFIX;
+            }
+            requestBytes += requestBlock;
+            responseBytes += responseBlock;
+        }
+        if (from < tags.size()) {
+            chunks.add(tags.subList(from, tags.size()));
+        }
+        return chunks;
+    }
 
-        // Payload
-        frame.write(payload);
+    private static int batchReadPayloadLength(List<Tag> tags) {
+        int length = BATCH_PAYLOAD_PREFIX;
+        for (int i = 0, n = tags.size(); i < n; i++) {
+            length += variableLength(tags.get(i));
+        }
+        return length;
+    }
 
-        return frame.toByteArray();
+    private void putBatchReadPayload(ByteBuffer dst, List<Tag> tags) {
+        dst.putShort(INSTRUCTION_READ_REQUEST);
+        dst.put((byte) 0x00); // Data type is given per block
+        dst.put((byte) 0x00); // Reserved
+        dst.putShort((short) tags.size()); // Number of blocks
+        for (int i = 0, n = tags.size(); i < n; i++) {
+            putVariable(dst, tags.get(i));
+        }
     }
 
     /**
-     * Calculate XOR checksum of all bytes
+     * Writes the constant part of the header and leaves room for the rest,
+     * which is filled in by {@link #endFrame} once the payload length is known.
      */
-    private byte calculateChecksum(byte[] data) {
-        byte checksum = 0;
-        for (byte b : data) {
-            checksum ^= b;
-        }
-        return checksum;
+    private int beginFrame(ByteBuffer dst) {
+        dst.order(ByteOrder.LITTLE_ENDIAN);
+        int start = dst.position();
+        dst.put(COMPANY_ID);
+        dst.put(PLC_INFO);
+        dst.put(CPU_INFO);
+        dst.put(FRAME_DIRECTION_REQUEST);
+        dst.position(start + HEADER_LENGTH);
+        return start;
+    }
+
+    private int endFrame(ByteBuffer dst, int start) {
+        return endFrame(dst, start, nextInvokeId());
+    }
+
+    private int endFrame(ByteBuffer dst, int start, int id) {
+        int payloadLength = dst.position() - start - HEADER_LENGTH;
+        dst.putShort(start + INVOKE_ID_OFFSET, (short) id);
+        dst.putShort(start + LENGTH_OFFSET, (short) payloadLength);
+        dst.put(start + POSITION_INFO_OFFSET, POSITION_INFO);
+        // Checksum (1 byte) - XOR of all previous header bytes
+        int checksum = HEADER_PREFIX_CHECKSUM ^ id ^ (id >>> 8) ^ payloadLength ^ (payloadLength >>> 8) ^ POSITION_INFO;
+        dst.put(start + CHECKSUM_OFFSET, (byte) checksum);
+        return HEADER_LENGTH + payloadLength;
     }
 
     /**
-     * Get FENet data type code from DataType enum
+     * Bytes written by {@link #putVariable}
      */
-    private byte getDataTypeCode(DataType dataType) {
-        switch (dataType) {
-            case Bit:
-                return DATA_TYPE_BIT;
-            case Byte:
-                return DATA_TYPE_BYTE;
-            case Word:
-                return DATA_TYPE_WORD;
-            case Dword:
-                return DATA_TYPE_DWORD;
-            case Lword:
-                return DATA_TYPE_LWORD;
-            default:
-                return DATA_TYPE_WORD;
-        }
+    private static int variableLength(Tag tag) {
+        return 2 + tag.getVariableNameBytes().length + 2;
     }
 
     /**
-     * Build variable name for FENet (e.g., "%MW100")
+     * Variable name length, name and a data count of 1
      */
-    private String buildVariableName(Tag tag) {
-        // Tag.toString() returns "MW100" format, we just need to prepend "%"
-        return "%" + tag.toString();
+    private void putVariable(ByteBuffer dst, Tag tag) {
+        byte[] varName = tag.getVariableNameBytes();
+        dst.putShort((short) varName.length);
+        dst.put(varName);
+        dst.putShort((short) 0x0001);
     }
 
     /**
-     * Convert hex string to bytes based on data type
+     * Writes a hex value as a little-endian number of the data type's size.
+     * Shorter values are zero padded on the left, longer ones keep their leading digits.
      */
-    private byte[] hexStringToBytes(String hexValue, DataType dataType) {
-        // Remove any spaces
-        hexValue = hexValue.replaceAll("\\s+", "");
+    private void putHexValue(ByteBuffer dst, String hexValue, DataType dataType) {
+        if (containsWhitespace(hexValue)) {
+            hexValue = hexValue.replaceAll("\\s+", "");
+        }
+        int length = getDataLength(dataType);
+        int padding = Math.max(0, length * 2 - hexValue.length());
+        // FENet uses little-endian for multi-byte values, so the last byte goes first
+        for (int i = length - 1; i >= 0; i--) {
+            int high = hexDigit(hexValue, i * 2 - padding);
+            int low = hexDigit(hexValue, i * 2 + 1 - padding);
+            dst.put((byte) ((high << 4) | low));
+        }
+    }
 
-        int length;
+    private static boolean containsWhitespace(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int hexDigit(String hexValue, int index) {
+        if (index < 0) {
+            return 0; // Sol taraftaki doldurma sıfırları
+        }
+        int digit = Character.digit(hexValue.charAt(index), 16);
+        if (digit < 0) {
+            throw new NumberFormatException("Invalid hex value: " + hexValue);
+        }
+        return digit;
+    }
+
+    private static int getDataLength(DataType dataType) {
         switch (dataType) {
             case Bit:
             case Byte:
-                length = 1;
-                break;
+                return 1;
             case Word:
-                length = 2;
-                break;
+                return 2;
             case Dword:
-                length = 4;
-                break;
+                return 4;
             case Lword:
-                length = 8;
-                break;
+                return 8;
             default:
-                length = 2;
+                return 2;
         }
+    }
 
-        // Ensure hex string is the right length
-        while (hexValue.length() < length * 2) {
-            hexValue = "0" + hexValue;
+    /**
+     * Encodes a frame with the given payload length into an array of exactly its size
+     */
+    private byte[] toArray(int payloadLength, FrameEncoder encoder) {
+        byte[] frame = new byte[HEADER_LENGTH + payloadLength];
+        int length = encoder.encode(ByteBuffer.wrap(frame));
+        if (length != frame.length) {
+            throw new IllegalStateException("FENet frame encoded to " + length + " bytes, expected " + frame.length);
         }
+        return frame;
+    }
 
-        byte[] bytes = new byte[length];
-        for (int i = 0; i < length; i++) {
-            int index = i * 2;
-            bytes[i] = (byte) Integer.parseInt(hexValue.substring(index, index + 2), 16);
+    private static byte headerPrefixChecksum() {
+        byte checksum = 0;
+        for (byte b : COMPANY_ID) {
+            checksum ^= b;
         }
-
-        // FENet uses little-endian for multi-byte values
-        if (length > 1) {
-            reverseBytes(bytes);
+        for (byte b : PLC_INFO) {
+            checksum ^= b;
         }
+        return (byte) (checksum ^ CPU_INFO ^ FRAME_DIRECTION_REQUEST);
+    }
 
-        return bytes;
+    @FunctionalInterface
+    private interface FrameEncoder {
+        int encode(ByteBuffer dst);
     }
 
     /**
-     * Reverse byte array (for little-endian conversion)
+     * Get FENet data type code from DataType enum
      */
-    private void reverseBytes(byte[] bytes) {
-        for (int i = 0; i < bytes.length / 2; i++) {
-            byte temp = bytes[i];
-            bytes[i] = bytes[bytes.length - 1 - i];
-            bytes[bytes.length - 1 - i] = temp;
+    private byte getDataTypeCode(DataType dataType) {
+        switch (dataType) {
+            case Bit:
+                return DATA_TYPE_BIT;
+            case Byte:
+                return DATA_TYPE_BYTE;
+            case Word:
+                return DATA_TYPE_WORD;
+            case Dword:
+                return DATA_TYPE_DWORD;
+            case Lword:
+                return DATA_TYPE_LWORD;
+            default:
+                return DATA_TYPE_WORD;
         }
     }
 
-    /**
-     * Write a short value in little-endian format
-     */
-    private void writeShort(ByteArrayOutputStream out, short value) {
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
+    private int nextInvokeId() {
+        return invokeId.updateAndGet(id -> (id + 1) % 65536);
     }
 
     public int getInvokeId() {
-        return invokeId;
+        return invokeId.get();
     }
 }
@@ -0,0 +1,38 @@
+package tr.com.logidex.cnetdedicated.protocol.fenet;
+
+/**
+ * Immutable, fully encoded FENet frame with invoke ID 0.
+ * A frame for a poll is produced by copying it and patching only the invoke ID and checksum bytes.
+ */
+public final class FENetFrameTemplate {
+
+    private final byte[] frame;
+
+    FENetFrameTemplate(byte[] frame) {
+        this.frame = frame;
+    }
+
+    /**
+     * Frame length in bytes, header included
+     */
+    public int length() {
+        return frame.length;
+    }
+
+    byte[] instantiate(int invokeId) {
+        byte[] copy = frame.clone();
+        patch(copy, invokeId);
+        return copy;
+    }
+
+    private void patch(byte[] target, int invokeId) {
+        target[FENetFrameBuilder.INVOKE_ID_OFFSET] = (byte) invokeId;
+        target[FENetFrameBuilder.INVOKE_ID_OFFSET + 1] = (byte) (invokeId >>> 8);
+        target[FENetFrameBuilder.CHECKSUM_OFFSET] = checksumFor(invokeId);
+    }
+
+    // Şablonun checksum'ı invoke ID 0 ile hesaplandı, yalnızca ID byte'ları eklenir
+    private byte checksumFor(int invokeId) {
+        return (byte) (frame[FENetFrameBuilder.CHECKSUM_OFFSET] ^ invokeId ^ (invokeId >>> 8));
+    }
+}
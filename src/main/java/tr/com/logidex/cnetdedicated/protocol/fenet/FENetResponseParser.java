@@ -130,7 +130,8 @@ public class FENetResponseParser {
     }
 
     /**
-     * Parse single block read response
+     * Parse single block read response. The data length of the block is read first, so a one-word block
+     * (2 data bytes) is not mistaken for an error status.
      */
     private void parseSingleBlockRead(ByteArrayInputStream stream, FENetResponse response) throws IOException {
         // Block Number (2 bytes, little-endian)
@@ -139,20 +140,17 @@ public class FENetResponseParser {
         // Data Length (2 bytes, little-endian)
         int dataLength = readShortLE(stream);
 
-        // Read remaining bytes as data
-        byte[] data = new byte[stream.available()];
-        stream.read(data);
-
-        // Check if this is an error response (typically very short)
-        if (data.length == 2) {
-            // Might be an error status
-            short errorStatus = (short) ((data[0] & 0xFF) | ((data[1] & 0xFF) << 8));
-            response.setErrorStatus(errorStatus);
-            response.setData(new byte[0]);
-        } else {
-            // Success - set data
+        if (dataLength > 0 && stream.available() >= dataLength) {
+            // Success - data of the declared length
+            byte[] data = new byte[dataLength];
+            stream.read(data);
             response.setErrorStatus((short) 0x0000);
             response.setData(data);
+        } else {
+            // Veri alanı bildirilen uzunlukta değil: kalan 2 byte hata durumu olarak okunur
+            short errorStatus = stream.available() >= 2 ? (short) readShortLE(stream) : 0;
+            response.setErrorStatus(errorStatus != 0 ? errorStatus : (short) 0xFFFF);
+            response.setData(new byte[0]);
         }
     }
 
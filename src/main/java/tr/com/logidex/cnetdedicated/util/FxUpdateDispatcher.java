@@ -0,0 +1,152 @@
+package tr.com.logidex.cnetdedicated.util;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs UI updates on the JavaFX thread once per pulse instead of posting a {@code Platform.runLater}
+ * per value change. An update that is already waiting is not queued again, so a tag that changes several
+ * times between two frames is drawn once; the update must therefore read the latest value when it runs
+ * instead of capturing it. Updates are run in the order they were first queued, at most the frame budget
+ * per pulse, the rest in the next frames. The {@link AnimationTimer} runs only while updates are waiting.
+ */
+public class FxUpdateDispatcher {
+    private static final Logger LOGGER = Logger.getLogger(FxUpdateDispatcher.class.getName());
+    private static final FxUpdateDispatcher DEFAULT = new FxUpdateDispatcher();
+    private final Set<Runnable> pending = ConcurrentHashMap.newKeySet();
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            runFrame();
+        }
+    };
+    private volatile int maxUpdatesPerFrame = 1000;
+    private volatile long frameTimeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(8);
+
+
+    /**
+     * Dispatcher shared by {@link TagRegistry} and the controls
+     */
+    public static FxUpdateDispatcher getDefault() {
+        return DEFAULT;
+    }
+
+
+    /**
+     * Queues the update for the next frame unless it is already waiting. Can be called from any thread.
+     */
+    public void dispatch(Runnable update) {
+        if (!pending.add(update)) {
+            coalesced.incrementAndGet();
+            return;
+        }
+        queue.add(update);
+        if (running.compareAndSet(false, true)) {
+            if (Platform.isFxApplicationThread()) {
+                timer.start();
+            } else {
+                Platform.runLater(timer::start);
+            }
+        }
+    }
+
+
+    private void runFrame() {
+        frames.incrementAndGet();
+        long deadline = System.nanoTime() + frameTimeBudgetNanos;
+        int budget = maxUpdatesPerFrame;
+        for (int count = 0; count < budget; count++) {
+            Runnable update = queue.poll();
+            if (update == null) {
+                break;
+            }
+            pending.remove(update); // Çalışırken gelen değişiklik yeniden sıraya girer
+            try {
+                update.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "UI update failed", e);
+            }
+            dispatched.incrementAndGet();
+            if (System.nanoTime() - deadline > 0) {
+                break;
+            }
+        }
+        if (queue.isEmpty()) {
+            timer.stop();
+            running.set(false);
+            // Durdurulurken eklenen güncelleme zamanlayıcıyı başlatamamış olabilir
+            if (!queue.isEmpty() && running.compareAndSet(false, true)) {
+                timer.start();
+            }
+        }
+    }
+
+
+    public int getMaxUpdatesPerFrame() {
+        return maxUpdatesPerFrame;
+    }
+
+
+    /**
+     * Most updates run in one frame; the rest wait for the next pulse
+     */
+    public void setMaxUpdatesPerFrame(int maxUpdatesPerFrame) {
+        if (maxUpdatesPerFrame < 1) {
+            throw new IllegalArgumentException("maxUpdatesPerFrame must be positive: " + maxUpdatesPerFrame);
+        }
+        this.maxUpdatesPerFrame = maxUpdatesPerFrame;
+    }
+
+
+    /**
+     * Time after which a frame stops running updates, even if the count budget is not used up
+     */
+    public void setFrameTimeBudget(long budget, TimeUnit unit) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("budget must be positive: " + budget);
+        }
+        this.frameTimeBudgetNanos = unit.toNanos(budget);
+    }
+
+
+    public long getFrameTimeBudget(TimeUnit unit) {
+        return unit.convert(frameTimeBudgetNanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * Updates waiting for a frame
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+
+    /**
+     * Updates run, updates dropped because they were already waiting, frames that ran updates and updates waiting.
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dispatched", dispatched.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("frames", frames.get());
+        stats.put("pending", pending.size());
+        return stats;
+    }
+}
@@ -3,6 +3,7 @@ package tr.com.logidex.cnetdedicated.util;
 import tr.com.logidex.cnetdedicated.app.XGBCNetClient;
 import tr.com.logidex.cnetdedicated.device.DataType;
 import tr.com.logidex.cnetdedicated.device.Tag;
+import tr.com.logidex.cnetdedicated.protocol.WriteCoalescer;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoAcknowledgeMessageFromThePLCException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoResponseException;
 
@@ -22,7 +23,7 @@ import java.util.logging.LogRecord;
 public class PLCCommandManager   {
     private static final Logger logger = Logger.getLogger(PLCCommandManager.class.getName());
 
-    // Singleton örneği
+    // Varsayılan örnek
     private static PLCCommandManager instance;
 
     // PLC istemcisi
@@ -68,11 +69,14 @@ public class PLCCommandManager   {
     }
 
     /**
-     * Özel constructor - singleton desenini uygulamak için
+     * Kayıt sisteminin bağlı olduğu PLC istemcisi için bir komut yöneticisi oluşturur.
+     * Her PLC bağlantısı kendi komut yöneticisine sahip olmalıdır.
+     *
+     * @param tagRegistry Komutların çalışacağı tag kayıt sistemi
      */
-    private PLCCommandManager(TagRegistry tagRegistry) {
+    public PLCCommandManager(TagRegistry tagRegistry) {
         this.tagRegistry = tagRegistry;
-        this.plcClient = XGBCNetClient.getInstance();
+        this.plcClient = tagRegistry.getClient();
         plcClient.setLogLevel(Level.SEVERE);
         logger.setLevel(logLevel);
 
@@ -129,7 +133,8 @@ public class PLCCommandManager   {
     }
 
     /**
-     * Singleton örneğini alır veya oluşturur
+     * Varsayılan örneği alır veya oluşturur. Tek PLC'li uygulamalar için korunmuştur,
+     * birden fazla PLC için {@link #PLCCommandManager(TagRegistry)} kullanılmalıdır.
      */
     public static synchronized PLCCommandManager getInstance(TagRegistry tagRegistry) {
         if (instance == null) {
@@ -146,10 +151,10 @@ public class PLCCommandManager   {
 
         running = true;
 
-        // Komut işleyici thread'i oluştur ve başlat
-        commandProcessorThread = new Thread(this::processCommands, "PLCCommandProcessor");
-        commandProcessorThread.setDaemon(true); // Ana uygulama kapandığında bu thread de otomatik kapanır
-        commandProcessorThread.setPriority(Thread.MAX_PRIORITY - 1); // Yüksek öncelik
+        // Komut işleyici thread'i oluştur ve başlat. Her yönetici bir bağlantının sıralı kanalıdır,
+        // sanal thread modunda bloklanan I/O taşıyıcı thread'i meşgul etmez
+        commandProcessorThread = VirtualThreads.newThreadFactory("PLCCommandProcessor", Thread.MAX_PRIORITY - 1) // Yüksek öncelik
+                .newThread(this::processCommands);
         commandProcessorThread.start();
 
         //LOGGER.info("PLC Komut Yöneticisi başlatıldı");
@@ -182,6 +187,13 @@ public class PLCCommandManager   {
         return commandQueue.size();
     }
 
+    /**
+     * Bu yöneticinin komut gönderdiği PLC istemcisini döndürür
+     */
+    public XGBCNetClient getClient() {
+        return plcClient;
+    }
+
     private void processCommands(){
         while (running) {
             PLCCommand command = null;
@@ -198,18 +210,24 @@ public class PLCCommandManager   {
                     continue;
                 }
 
-                // Bağlantıyı kontrol et
-                if (!plcClient.isConnected()) {
+                // Bağlantıyı kontrol et, yeniden bağlanılıyorsa komutun kalan süresi kadar bekle
+                if (!plcClient.isConnected() && !plcClient.awaitConnected(command.getRemainingMs())) {
                     //LOGGER.warning("PLC bağlantısı yok, komut atlanıyor: " + command);
                     logger.warning("PLC bağlantısı yok, komut atlanıyor: " + command);
                     command.setSuccess(false);
                     command.notifyCompletion();
-
-                    // Bağlantı yoksa kısa bir süre bekle
-                    Thread.sleep(1000);
                     continue;
                 }
 
+                // Sırada bekleyen word yazmaları tek seferde gönderilir
+                if (command instanceof WriteSingleCommand && ((WriteSingleCommand) command).isCoalescible()) {
+                    List<WriteSingleCommand> batch = collectWriteBatch((WriteSingleCommand) command);
+                    if (batch.size() > 1) {
+                        executeWriteBatch(batch);
+                        continue;
+                    }
+                }
+
                 try {
                     // Komutu çalıştır
                     //LOGGER.log(Level.FINE, "Komut çalıştırılıyor: {0}", command);
@@ -265,6 +283,61 @@ public class PLCCommandManager   {
 
 
 
+    /**
+     * Kuyruktan, ilk komutla aynı öncelikteki word yazma komutlarını toplar. Diğer komutlar kuyruğa geri konur.
+     */
+    private List<WriteSingleCommand> collectWriteBatch(WriteSingleCommand first) {
+        List<WriteSingleCommand> batch = new ArrayList<>();
+        batch.add(first);
+        List<PLCCommand> pending = new ArrayList<>();
+        commandQueue.drainTo(pending);
+        List<PLCCommand> remaining = new ArrayList<>();
+        for (PLCCommand command : pending) {
+            if (command instanceof WriteSingleCommand
+                    && command.getPriority() == first.getPriority()
+                    && ((WriteSingleCommand) command).isCoalescible()
+                    && !command.isExpired()) {
+                batch.add((WriteSingleCommand) command);
+            } else {
+                remaining.add(command);
+            }
+        }
+        commandQueue.addAll(remaining);
+        return batch;
+    }
+
+
+    /**
+     * Yazma komutlarını birleştirilmiş frame'lerle gönderir. Hata olursa her komut kendi yeniden deneme hakkını kullanır.
+     */
+    private void executeWriteBatch(List<WriteSingleCommand> batch) {
+        List<Tag> tags = new ArrayList<>(batch.size());
+        for (WriteSingleCommand command : batch) {
+            command.tag.setValueAsHexString(command.value);
+            tags.add(command.tag);
+        }
+        try {
+            logger.fine("Birleştirilmiş yazma: " + batch.size() + " komut");
+            plcClient.writeWords(tags);
+            for (WriteSingleCommand command : batch) {
+                command.setSuccess(true);
+                command.notifyCompletion();
+            }
+        } catch (Exception | NoAcknowledgeMessageFromThePLCException | NoResponseException e) {
+            logger.log(Level.SEVERE, "Birleştirilmiş yazma hatası: " + batch.size() + " komut", e);
+            for (WriteSingleCommand command : batch) {
+                command.setSuccess(false);
+                if (command.shouldRetry()) {
+                    command.incrementRetryCount();
+                    commandQueue.offer(command);
+                } else {
+                    command.notifyCompletion();
+                }
+            }
+        }
+    }
+
+
     /**
      * Komut kuyruğunun durumunu loglayan bir metot
      */
@@ -532,6 +605,13 @@ public class PLCCommandManager   {
             return System.currentTimeMillis() - creationTime > timeoutMs;
         }
 
+        /**
+         * Zaman aşımına kalan süreyi döndürür (ms)
+         */
+        public long getRemainingMs() {
+            return Math.max(0, timeoutMs - (System.currentTimeMillis() - creationTime));
+        }
+
         /**
          * Yeniden deneme sayısını arttırır
          */
@@ -679,6 +759,13 @@ public class PLCCommandManager   {
             return future;
         }
 
+        /**
+         * Word yazmaları diğerleriyle birleştirilebilir
+         */
+        public boolean isCoalescible() {
+            return WriteCoalescer.isCoalescible(tag);
+        }
+
         @Override
         public String toString() {
             return "WriteSingleCommand{tag=" + tag.getName() + ", value=" + value + "}";
@@ -0,0 +1,187 @@
+package tr.com.logidex.cnetdedicated.util;
+
+import tr.com.logidex.cnetdedicated.device.Tag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sayfa bazlı okuma: yalnızca kritik tag'ler ve aktif sayfanın tag'leri taranır.
+ * Kritik tag'ler tek bir grupta hızlı, aktif sayfa kendi grubunda daha yavaş okunur; sayfa değişince
+ * önceki sayfanın grubu zamanlayıcıdan çıkarılır. Her sayfa kendi kayıt grubunu korur, böylece Cnet'te
+ * yakın zamanda gösterilmiş bir sayfaya dönüşte kayıt çerçevesi gönderilmez.
+ */
+final class PagePoller {
+    private static final Logger LOGGER = Logger.getLogger(PagePoller.class.getName());
+    private final TagRegistry registry;
+    private final ScanScheduler scheduler;
+    private final int criticalGroup;
+    private final long criticalPeriodNanos;
+    private final int pageGroupBase;
+    private final long pagePeriodNanos;
+    // Sayfa -> kayıt grubu numarası, ilk gösterimde verilir
+    private final Map<String, Integer> pageGroups = new HashMap<>();
+    // Tag listesi güncel olarak kaydedilmiş sayfalar
+    private final Set<String> registeredPages = new HashSet<>();
+    private boolean criticalRegistered;
+    private boolean criticalScheduled;
+    private int polledCriticalTags;
+    private Integer scheduledPageGroup;
+    private int polledPageTags;
+    private String activePage;
+    private boolean stopped;
+
+
+    PagePoller(TagRegistry registry, ScanScheduler scheduler, int criticalGroup, long criticalPeriodNanos,
+               int pageGroupBase, long pagePeriodNanos) {
+        this.registry = registry;
+        this.scheduler = scheduler;
+        this.criticalGroup = criticalGroup;
+        this.criticalPeriodNanos = criticalPeriodNanos;
+        this.pageGroupBase = pageGroupBase;
+        this.pagePeriodNanos = pagePeriodNanos;
+    }
+
+
+    /**
+     * Kritik tag'ler değişti, sonraki sayfa değişiminde gruplar yeniden kaydedilir
+     */
+    synchronized void criticalTagsChanged() {
+        criticalRegistered = false;
+        registeredPages.clear(); // Sayfa grupları kritik tag'leri içermez
+    }
+
+
+    /**
+     * Sayfanın tag'leri değişti, sayfa bir sonraki gösteriminde yeniden kaydedilir
+     */
+    synchronized void pageTagsChanged(String pageId) {
+        registeredPages.remove(pageId);
+    }
+
+
+    /**
+     * Kritik grubu gerekirse yeniler, önceki sayfanın okumasını durdurur ve yeni sayfanın grubunu zamanlar.
+     */
+    synchronized void activate(String pageId) {
+        if (stopped) {
+            return;
+        }
+        activePage = pageId;
+        refreshCriticalGroup();
+
+        if (scheduledPageGroup != null) {
+            scheduler.unschedule(scheduledPageGroup);
+            scheduledPageGroup = null;
+        }
+        List<Tag> tags = pageId != null ? pageTagsWithoutCritical(pageId) : new ArrayList<>();
+        polledPageTags = tags.size();
+        if (tags.isEmpty()) {
+            return;
+        }
+        Integer group = pageGroups.get(pageId);
+        if (group == null) {
+            group = pageGroupBase + pageGroups.size();
+            pageGroups.put(pageId, group);
+        }
+        if (registeredPages.contains(pageId)) {
+            schedulePage(group);
+            return;
+        }
+        int pageGroup = group;
+        registry.addTagsToRegistrationGroupAsync(pageGroup, tags).whenComplete((v, error) -> {
+            synchronized (this) {
+                if (error != null) {
+                    LOGGER.log(Level.WARNING, "Sayfa grubu kaydedilemedi: " + pageId, error);
+                    return;
+                }
+                registeredPages.add(pageId);
+                if (!stopped && pageId.equals(activePage) && scheduledPageGroup == null) {
+                    schedulePage(pageGroup);
+                }
+            }
+        });
+    }
+
+
+    private void schedulePage(int group) {
+        scheduler.schedule(group, pagePeriodNanos, TimeUnit.NANOSECONDS);
+        scheduledPageGroup = group;
+    }
+
+
+    private void refreshCriticalGroup() {
+        if (criticalRegistered) {
+            return;
+        }
+        criticalRegistered = true;
+        List<Tag> tags = registry.getCriticalTags();
+        polledCriticalTags = tags.size();
+        if (criticalScheduled) {
+            scheduler.unschedule(criticalGroup);
+            criticalScheduled = false;
+        }
+        if (tags.isEmpty()) {
+            return;
+        }
+        registry.addTagsToRegistrationGroupAsync(criticalGroup, tags).whenComplete((v, error) -> {
+            synchronized (this) {
+                if (error != null) {
+                    LOGGER.log(Level.WARNING, "Kritik tag grubu kaydedilemedi", error);
+                    criticalRegistered = false; // Sonraki sayfa değişiminde yeniden denenir
+                    return;
+                }
+                if (!stopped && !criticalScheduled) {
+                    scheduler.schedule(criticalGroup, criticalPeriodNanos, TimeUnit.NANOSECONDS);
+                    criticalScheduled = true;
+                }
+            }
+        });
+    }
+
+
+    private List<Tag> pageTagsWithoutCritical(String pageId) {
+        List<Tag> tags = new ArrayList<>();
+        Set<String> critical = new HashSet<>();
+        for (Tag tag : registry.getCriticalTags()) {
+            critical.add(tag.getName());
+        }
+        for (Tag tag : registry.getPageTags(pageId)) {
+            if (!critical.contains(tag.getName())) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+
+    /**
+     * Okunan tag sayısı: kritik tag'ler ve aktif sayfanın kritik olmayan tag'leri
+     */
+    synchronized int getPolledTagCount() {
+        return (criticalScheduled ? polledCriticalTags : 0) + (scheduledPageGroup != null ? polledPageTags : 0);
+    }
+
+
+    /**
+     * Zamanlanmış grupları zamanlayıcıdan çıkarır
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (scheduledPageGroup != null) {
+            scheduler.unschedule(scheduledPageGroup);
+            scheduledPageGroup = null;
+        }
+        if (criticalScheduled) {
+            scheduler.unschedule(criticalGroup);
+            criticalScheduled = false;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package tr.com.logidex.cnetdedicated.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls registration groups at their own rates, e.g. 50 ms for critical groups, 500 ms for page groups
+ * and 10 s for background groups.
+ * <p>
+ * Every period of a group releases one read whose deadline is the start of the next period. Of the
+ * released reads the one with the earliest deadline is sent first (EDF), one at a time, through the
+ * {@link PLCCommandManager}, so queued writes still go before the periodic reads. A group that could not
+ * be read within its period skips the missed cycles instead of queueing them. Times are taken from
+ * {@link System#nanoTime()}; the delay between release and start of every read is recorded as jitter.
+ */
+public class ScanScheduler {
+    private static final Logger LOGGER = Logger.getLogger(ScanScheduler.class.getName());
+    // Komut yöneticisindeki komut zaman aşımından biraz uzun
+    private static final long READ_TIMEOUT_MS = 6000;
+    private final PLCCommandManager commandManager;
+    private final Map<Integer, ScanGroup> groups = new LinkedHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private volatile boolean running;
+    private Thread schedulerThread;
+
+
+    /**
+     * @param commandManager started command manager of the PLC whose groups are polled
+     */
+    public ScanScheduler(PLCCommandManager commandManager) {
+        this.commandManager = commandManager;
+    }
+
+
+    /**
+     * Polls the registration group every period, starting now. Calling it again changes the period.
+     */
+    public void schedule(int regNumber, long period, TimeUnit unit) {
+        long periodNanos = unit.toNanos(period);
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        lock.lock();
+        try {
+            ScanGroup group = groups.get(regNumber);
+            if (group == null) {
+                groups.put(regNumber, new ScanGroup(regNumber, periodNanos, System.nanoTime()));
+            } else {
+                group.periodNanos = periodNanos;
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Stops polling the group. A read that already started is finished.
+     */
+    public void unschedule(int regNumber) {
+        lock.lock();
+        try {
+            groups.remove(regNumber);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    public boolean isScheduled(int regNumber) {
+        lock.lock();
+        try {
+            return groups.containsKey(regNumber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    public void start() {
+        lock.lock();
+        try {
+            if (running) {
+                return;
+            }
+            running = true;
+            schedulerThread = VirtualThreads.newThreadFactory("ScanScheduler", Thread.MAX_PRIORITY - 1)
+                    .newThread(this::run);
+            schedulerThread.start();
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.info("Tarama zamanlayıcısı başlatıldı");
+    }
+
+
+    public void stop() {
+        Thread thread;
+        lock.lock();
+        try {
+            running = false;
+            thread = schedulerThread;
+            schedulerThread = null;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        LOGGER.info("Tarama zamanlayıcısı durduruldu");
+    }
+
+
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private void run() {
+        while (running) {
+            ScanGroup next;
+            long releasedAt;
+            lock.lock();
+            try {
+                next = pollReleased();
+                if (next == null) {
+                    long wait = nanosUntilNextRelease();
+                    try {
+                        changed.awaitNanos(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    continue;
+                }
+                releasedAt = next.release;
+            } finally {
+                lock.unlock();
+            }
+            read(next, releasedAt);
+        }
+    }
+
+
+    /**
+     * Released group with the earliest deadline, or null. Caller holds the lock.
+     */
+    private ScanGroup pollReleased() {
+        long now = System.nanoTime();
+        ScanGroup earliest = null;
+        for (ScanGroup group : groups.values()) {
+            if (group.release - now <= 0 && (earliest == null || group.deadline() - earliest.deadline() < 0)) {
+                earliest = group;
+            }
+        }
+        return earliest;
+    }
+
+
+    /**
+     * Caller holds the lock
+     */
+    private long nanosUntilNextRelease() {
+        long now = System.nanoTime();
+        long wait = TimeUnit.SECONDS.toNanos(1);
+        for (ScanGroup group : groups.values()) {
+            wait = Math.min(wait, group.release - now);
+        }
+        return Math.max(wait, 0);
+    }
+
+
+    private void read(ScanGroup group, long releasedAt) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            commandManager.readRegistrationGroup(group.regNumber, PLCCommandManager.Priority.LOW)
+                    .get(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            ok = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.FINE, "Periyodik okuma başarısız, grup: " + group.regNumber, e);
+        }
+        long end = System.nanoTime();
+        lock.lock();
+        try {
+            group.completed(releasedAt, start, end, ok);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Scan counters of every scheduled group by registration number
+     */
+    public Map<Integer, GroupStatistics> getStatistics() {
+        Map<Integer, GroupStatistics> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (ScanGroup group : groups.values()) {
+                stats.put(group.regNumber, new GroupStatistics(group));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+
+    /**
+     * Schedule of one group. Guarded by the scheduler lock.
+     */
+    private static final class ScanGroup {
+        private final int regNumber;
+        private long periodNanos;
+        private long release; // Bir sonraki okumanın serbest kalacağı an
+        private long scans;
+        private long errors;
+        private long skippedCycles;
+        private long deadlineMisses;
+        private long lastJitterNanos;
+        private long maxJitterNanos;
+        private long totalJitterNanos;
+        private long lastDurationNanos;
+
+
+        private ScanGroup(int regNumber, long periodNanos, long release) {
+            this.regNumber = regNumber;
+            this.periodNanos = periodNanos;
+            this.release = release;
+        }
+
+
+        private long deadline() {
+            return release + periodNanos;
+        }
+
+
+        private void completed(long releasedAt, long start, long end, boolean ok) {
+            scans++;
+            if (!ok) {
+                errors++;
+            }
+            lastJitterNanos = start - releasedAt;
+            maxJitterNanos = Math.max(maxJitterNanos, lastJitterNanos);
+            totalJitterNanos += lastJitterNanos;
+            lastDurationNanos = end - start;
+            long next = releasedAt + periodNanos;
+            if (end - next > 0) {
+                // Periyot kaçırıldı: biriken okumalar kuyruğa eklenmez, sıradaki periyoda atlanır
+                deadlineMisses++;
+                long missed = (end - next) / periodNanos + 1;
+                skippedCycles += missed;
+                next += missed * periodNanos;
+            }
+            release = next;
+        }
+    }
+
+
+    /**
+     * Counters of one group at the time {@link #getStatistics()} was called. Jitter is the delay between
+     * the release of a read and its start.
+     */
+    public static final class GroupStatistics {
+        private final long periodNanos;
+        private final long scans;
+        private final long errors;
+        private final long skippedCycles;
+        private final long deadlineMisses;
+        private final long lastJitterNanos;
+        private final long maxJitterNanos;
+        private final long meanJitterNanos;
+        private final long lastDurationNanos;
+
+
+        private GroupStatistics(ScanGroup group) {
+            this.periodNanos = group.periodNanos;
+            this.scans = group.scans;
+            this.errors = group.errors;
+            this.skippedCycles = group.skippedCycles;
+            this.deadlineMisses = group.deadlineMisses;
+            this.lastJitterNanos = group.lastJitterNanos;
+            this.maxJitterNanos = group.maxJitterNanos;
+            this.meanJitterNanos = group.scans > 0 ? group.totalJitterNanos / group.scans : 0;
+            this.lastDurationNanos = group.lastDurationNanos;
+        }
+
+
+        public long getPeriodNanos() {
+            return periodNanos;
+        }
+
+
+        public long getScans() {
+            return scans;
+        }
+
+
+        public long getErrors() {
+            return errors;
+        }
+
+
+        /**
+         * Periods that passed without a read because the previous read finished too late
+         */
+        public long getSkippedCycles() {
+            return skippedCycles;
+        }
+
+
+        /**
+         * Reads that finished after the end of their period
+         */
+        public long getDeadlineMisses() {
+            return deadlineMisses;
+        }
+
+
+        public long getLastJitterNanos() {
+            return lastJitterNanos;
+        }
+
+
+        public long getMaxJitterNanos() {
+            return maxJitterNanos;
+        }
+
+
+        public long getMeanJitterNanos() {
+            return meanJitterNanos;
+        }
+
+
+        public long getLastDurationNanos() {
+            return lastDurationNanos;
+        }
+
+
+        @Override
+        public String toString() {
+            return "GroupStatistics{period=" + TimeUnit.NANOSECONDS.toMillis(periodNanos) + "ms, scans=" + scans
+                    + ", errors=" + errors + ", skipped=" + skippedCycles + ", misses=" + deadlineMisses
+                    + ", jitter=" + TimeUnit.NANOSECONDS.toMicros(meanJitterNanos) + "/" + TimeUnit.NANOSECONDS.toMicros(maxJitterNanos)
+                    + "us, duration=" + TimeUnit.NANOSECONDS.toMicros(lastDurationNanos) + "us}";
+        }
+    }
+}
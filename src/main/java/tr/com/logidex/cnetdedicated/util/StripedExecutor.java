@@ -0,0 +1,142 @@
+package tr.com.logidex.cnetdedicated.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes. Tasks with the same key always go to the same
+ * lane, so they run one after another in submission order; tasks of different keys run in parallel on
+ * the other lanes. A slow task only delays the keys that share its lane.
+ * <p>
+ * Lane threads are created on first use, as virtual threads when {@link VirtualThreads} is enabled.
+ */
+public class StripedExecutor {
+    private final String name;
+    private final ThreadPoolExecutor[] lanes;
+
+
+    /**
+     * @param name      thread name prefix, lane i runs on thread {@code name-i}
+     * @param laneCount number of lanes, e.g. the number of cores
+     * @param priority  priority of platform lane threads
+     */
+    public StripedExecutor(String name, int laneCount, int priority) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("laneCount must be positive: " + laneCount);
+        }
+        this.name = name;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    VirtualThreads.newThreadFactory(name + "-" + i, priority));
+        }
+    }
+
+
+    /**
+     * Queues the task on the lane of the key.
+     *
+     * @throws RejectedExecutionException after {@link #shutdown()}
+     */
+    public void execute(Object key, Runnable task) {
+        lanes[laneOf(key)].execute(task);
+    }
+
+
+    /**
+     * Lane that runs the tasks of the key
+     */
+    public int laneOf(Object key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+
+    /**
+     * Tasks waiting on each lane, not counting the one that is running
+     */
+    public int[] getBacklogs() {
+        int[] backlogs = new int[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            backlogs[i] = lanes[i].getQueue().size();
+        }
+        return backlogs;
+    }
+
+
+    /**
+     * Tasks waiting on all lanes
+     */
+    public int getBacklog() {
+        int backlog = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            backlog += lane.getQueue().size();
+        }
+        return backlog;
+    }
+
+
+    /**
+     * Approximate number of finished tasks
+     */
+    public long getCompletedTaskCount() {
+        long completed = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            completed += lane.getCompletedTaskCount();
+        }
+        return completed;
+    }
+
+
+    /**
+     * Runs the queued tasks, but accepts no new ones
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+
+    /**
+     * Interrupts the running tasks and returns the ones that never started
+     */
+    public List<Runnable> shutdownNow() {
+        List<Runnable> notStarted = new ArrayList<>();
+        for (ThreadPoolExecutor lane : lanes) {
+            notStarted.addAll(lane.shutdownNow());
+        }
+        return notStarted;
+    }
+
+
+    /**
+     * Waits until every lane finished after a shutdown request, or the timeout elapsed.
+     *
+     * @return true if all lanes terminated
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    @Override
+    public String toString() {
+        return "StripedExecutor{" + name + ", lanes=" + lanes.length + ", backlog=" + getBacklog() + "}";
+    }
+}
@@ -1,6 +1,8 @@
 package tr.com.logidex.cnetdedicated.util;
-import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import tr.com.logidex.cnetdedicated.app.XGBCNetClient;
+import tr.com.logidex.cnetdedicated.device.Deadband;
 import tr.com.logidex.cnetdedicated.device.Tag;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoAcknowledgeMessageFromThePLCException;
 import tr.com.logidex.cnetdedicated.protocol.exceptions.NoResponseException;
@@ -25,24 +27,19 @@ public class TagRegistry {
 
     // THREAD YÖNETIMI
 
-    // İş mantığı için özel bir executor (tek thread)
-    private final ExecutorService businessLogicExecutor = Executors.newSingleThreadExecutor(
-            r -> {
-                Thread thread = new Thread(r, "BusinessLogicThread");
-                thread.setPriority(Thread.MAX_PRIORITY - 1); // Yüksek öncelik (ama cyclic thread'den düşük)
-                thread.setDaemon(true);
-                return thread;
-            }
-    );
+    // Varsayılan şerit sayısı: her çekirdeğe bir şerit
+    private static final int DEFAULT_LANES = Runtime.getRuntime().availableProcessors();
 
-    // Kritik iş mantığı için özel bir executor (tek thread)
-    private final ExecutorService criticalBusinessExecutor = Executors.newSingleThreadExecutor(
-            r -> {
-                Thread thread = new Thread(r, "CriticalBusinessThread");
-                thread.setPriority(Thread.MAX_PRIORITY - 1);
-                thread.setDaemon(true);
-                return thread;
-            }
+    // İş mantığı için şeritli executor: aynı tag'in bildirimleri hep aynı şeritte sırayla,
+    // farklı tag'ler paralel işlenir (VirtualThreads etkinse sanal thread)
+    private final StripedExecutor businessLogicExecutor;
+
+    // Kritik iş mantığı için şeritli executor
+    private final StripedExecutor criticalBusinessExecutor;
+
+    // Minimum aralıklı deadband'lerde geciktirilen bildirimler için zamanlayıcı (thread ilk kullanımda açılır)
+    private final ScheduledExecutorService deadbandTimer = Executors.newSingleThreadScheduledExecutor(
+            VirtualThreads.newThreadFactory("DeadbandTimer", Thread.NORM_PRIORITY)
     );
 
     // TAG SAKLAMA VE KATEGORİZASYON
@@ -60,15 +57,21 @@ public class TagRegistry {
     private final Map<Integer, List<Tag>> registrationGroups = new ConcurrentHashMap<>();
 
     // Aktif sayfa ID'si
-    private String activePageId = null;
+    private volatile String activePageId = null;
+
+    // Sayfa bazlı okuma açıksa yalnızca kritik ve aktif sayfa tag'lerini tarar
+    private volatile PagePoller pagePoller;
+
+    // Bu kayıt sisteminin bağlı olduğu PLC istemcisi
+    private final XGBCNetClient client;
 
     // TAG ABONELIK MEKANIZMASI
 
     // Dinleyici tipleri için enum
     public enum ListenerType {
-        UI,       // UI bileşenleri için (JavaFX thread'inde çalışır)
-        BUSINESS, // Normal iş mantığı için (business executor'da çalışır)
-        CRITICAL  // Kritik iş mantığı için (critical executor'da çalışır)
+        UI,       // UI bileşenleri için (JavaFX thread'inde, kare başına en fazla bir kez çalışır)
+        BUSINESS, // Normal iş mantığı için (business executor'ın tag'e ait şeridinde çalışır)
+        CRITICAL  // Kritik iş mantığı için (critical executor'ın tag'e ait şeridinde çalışır)
     }
 
     // Her tag için dinleyici tiplerini saklama
@@ -89,6 +92,47 @@ public class TagRegistry {
         void onTagChanged(Tag tag);
     }
 
+    /**
+     * Varsayılan PLC istemcisine bağlı bir kayıt sistemi oluşturur.
+     */
+    public TagRegistry() {
+        this(XGBCNetClient.getInstance());
+    }
+
+    /**
+     * Belirli bir PLC istemcisine bağlı bir kayıt sistemi oluşturur.
+     *
+     * @param client Kayıt gruplarının okunacağı PLC istemcisi
+     */
+    public TagRegistry(XGBCNetClient client) {
+        this(client, DEFAULT_LANES, DEFAULT_LANES);
+    }
+
+    /**
+     * Belirli bir PLC istemcisine bağlı, şerit sayıları verilen bir kayıt sistemi oluşturur.
+     * Bir tag'in dinleyicileri hep aynı şeritte sırayla çalışır; yavaş bir dinleyici yalnızca
+     * kendi şeridindeki tag'leri geciktirir.
+     *
+     * @param client Kayıt gruplarının okunacağı PLC istemcisi
+     * @param businessLanes BUSINESS dinleyicileri için paralel şerit sayısı
+     * @param criticalLanes CRITICAL dinleyicileri için paralel şerit sayısı
+     */
+    public TagRegistry(XGBCNetClient client, int businessLanes, int criticalLanes) {
+        this.client = Objects.requireNonNull(client, "client");
+        // Yüksek öncelik (ama cyclic thread'den düşük)
+        this.businessLogicExecutor = new StripedExecutor("BusinessLogicThread", businessLanes, Thread.MAX_PRIORITY - 1);
+        this.criticalBusinessExecutor = new StripedExecutor("CriticalBusinessThread", criticalLanes, Thread.MAX_PRIORITY - 1);
+    }
+
+    /**
+     * Bu kayıt sisteminin bağlı olduğu PLC istemcisini döndürür.
+     *
+     * @return PLC istemcisi
+     */
+    public XGBCNetClient getClient() {
+        return client;
+    }
+
     /**
      * Yeni bir tag'i sisteme kaydeder.
      *
@@ -109,16 +153,39 @@ public class TagRegistry {
                     .add(tag.getName());
         }
 
-        // Tag değeri değiştiğinde dinleyicilere bildirim yapacak property listener'ı ekle
-        tag.valueProperty().addListener((obs, oldVal, newVal) -> {
-            notifyTagChangedIfSignificant(tag, oldVal != null ? oldVal.toString() : null,
-                    newVal != null ? newVal.toString() : null);
-        });
+        // Sayfa bazlı okumada gruplar bir sonraki sayfa değişiminde yenilenir
+        PagePoller poller = pagePoller;
+        if (poller != null) {
+            if (isCritical) {
+                poller.criticalTagsChanged();
+            }
+            for (String pageId : pageIds) {
+                poller.pageTagsChanged(pageId);
+            }
+        }
+
+        // Tag değeri değiştiğinde dinleyicilere bildirim yapacak listener'ı ekle.
+        // Invalidation dinlendiği için görüntü metni bildirim için biçimlendirilmez.
+        tag.valueProperty().addListener(new DeadbandFilter(tag));
 
         LOGGER.log(Level.FINE, "Tag kaydedildi: {0}, kritik: {1}", new Object[]{tag.getName(), isCritical});
         return tag;
     }
 
+    /**
+     * Yeni bir tag'i verilen deadband ile sisteme kaydeder.
+     *
+     * @param tag Kaydedilecek tag
+     * @param deadband Hangi değer değişikliklerinin dinleyicilere bildirileceği
+     * @param isCritical Tag'in kritik olup olmadığı (sürekli yüksek öncelikli okuma için)
+     * @param pageIds Bu tag'in görüntülendiği sayfaların ID'leri
+     * @return Kaydedilen tag
+     */
+    public Tag registerTag(Tag tag, Deadband deadband, boolean isCritical, String... pageIds) {
+        tag.setDeadband(deadband);
+        return registerTag(tag, isCritical, pageIds);
+    }
+
     /**
      * İsme göre kayıtlı bir tag döndürür.
      *
@@ -166,53 +233,19 @@ public class TagRegistry {
         }
     }
 
-    /**
-     * Değerdeki değişim önemliyse bildirim yapan metot.
-     * Gereksiz güncellemeleri filtreler.
-     */
-    private void notifyTagChangedIfSignificant(Tag tag, String oldValue, String newValue) {
-        // Değer değişmemişse bildirim yapma
-        if (Objects.equals(oldValue, newValue)) {
-            return;
-        }
-
-        // Sayısal değerler için, değişim belirli bir eşiği geçmişse bildirim yap
-        if (tag.isNumericTag()) {
-            try {
-                // Eski veya yeni değer null ise, her zaman bildirim yap
-                if (oldValue == null || newValue == null) {
-                    notifyTagChanged(tag);
-                    return;
-                }
-
-                double oldNum = Double.parseDouble(oldValue);
-                double newNum = Double.parseDouble(newValue);
-
-                // Değişim %1'den az ve mutlak değişim 1'den az ise bildirim yapma
-                // (çok küçük değişimler için gürültü filtreleme)
-                if (Math.abs(newNum - oldNum) < 1.0 &&
-                        (oldNum == 0 || Math.abs((newNum - oldNum) / oldNum) < 0.01)) {
-                    return;
-                }
-            } catch (NumberFormatException e) {
-                // Sayısal değer değilse, her değişimde bildirim yap
-            }
-        }
-
-        // Değişim önemliyse bildirim yap
-        notifyTagChanged(tag);
-    }
-
     /**
      * Bir tag'in değeri değiştiğinde ilgili dinleyicilere
      * kendi thread'lerinde bildirim yapar.
+     *
+     * @param uiUpdate UI dinleyicilerini çağıran, tag başına tek görev; bekliyorsa yeniden sıraya girmez
      */
-    private void notifyTagChanged(Tag tag) {
+    private void notifyTagChanged(Tag tag, Runnable uiUpdate) {
         totalUpdates++;
         lastUpdateTime = System.currentTimeMillis();
 
         if (tagListeners.containsKey(tag.getName())) {
             Map<TagChangeListener, ListenerType> listeners = tagListeners.get(tag.getName());
+            boolean hasUiListener = false;
 
             for (Map.Entry<TagChangeListener, ListenerType> entry : listeners.entrySet()) {
                 TagChangeListener listener = entry.getKey();
@@ -221,18 +254,18 @@ public class TagRegistry {
                 try {
                     switch (type) {
                         case UI:
-                            // UI bileşenleri için JavaFX thread'ini kullan
-                            Platform.runLater(() -> safeNotify(listener, tag));
+                            // UI dinleyicileri aşağıda tek görev olarak bir sonraki karede çağrılır
+                            hasUiListener = true;
                             break;
 
                         case BUSINESS:
-                            // İş mantığı için ayrı bir thread havuzunu kullan
-                            businessLogicExecutor.submit(() -> safeNotify(listener, tag));
+                            // Tag'in şeridini kullan, aynı tag'in bildirimleri sırayla işlenir
+                            businessLogicExecutor.execute(tag.getName(), () -> safeNotify(listener, tag));
                             break;
 
                         case CRITICAL:
-                            // Kritik iş mantığı için öncelikli thread'i kullan
-                            criticalBusinessExecutor.submit(() -> safeNotify(listener, tag));
+                            // Kritik iş mantığı için öncelikli şeritleri kullan
+                            criticalBusinessExecutor.execute(tag.getName(), () -> safeNotify(listener, tag));
                             break;
                     }
                 } catch (RejectedExecutionException e) {
@@ -241,6 +274,26 @@ public class TagRegistry {
                             tag.getName());
                 }
             }
+
+            if (hasUiListener) {
+                // Aynı karede birden çok değişiklik tek çağrıya iner, dinleyici son değeri okur
+                FxUpdateDispatcher.getDefault().dispatch(uiUpdate);
+            }
+        }
+    }
+
+    /**
+     * Tag'in UI dinleyicilerini JavaFX thread'inde çağırır.
+     */
+    private void notifyUiListeners(Tag tag) {
+        Map<TagChangeListener, ListenerType> listeners = tagListeners.get(tag.getName());
+        if (listeners == null) {
+            return;
+        }
+        for (Map.Entry<TagChangeListener, ListenerType> entry : listeners.entrySet()) {
+            if (entry.getValue() == ListenerType.UI) {
+                safeNotify(entry.getKey(), tag);
+            }
         }
     }
 
@@ -257,6 +310,8 @@ public class TagRegistry {
 
     /**
      * Tag'leri PLC'deki döngüsel okuma için kayıt grubuna ekler.
+     * Grup bir çerçeveye sığmıyorsa istemci onu protokol sınırlarına göre alt çerçevelere böler
+     * (Cnet'te 32, FENet'te 16 blok); okuma sonucu yine tek liste olarak döner.
      *
      * @param regNumber Kayıt grubu numarası
      * @param tags Gruba eklenecek tag'ler
@@ -269,7 +324,6 @@ public class TagRegistry {
         }
 
         // Tag'leri XGBCNetClient ile kaydet
-        XGBCNetClient client = XGBCNetClient.getInstance();
         client.registerDevicesToMonitor(tags, String.valueOf(regNumber));
 
         // Başarılı kayıt sonrası, tag'leri gruba ekle
@@ -279,6 +333,24 @@ public class TagRegistry {
                 new Object[]{regNumber, tags.size()});
     }
 
+    /**
+     * {@link #addTagsToRegistrationGroup(int, List)} metodunun asenkron hali.
+     * Grup, PLC kaydı kabul ettikten sonra okunabilir hale gelir.
+     *
+     * @param regNumber Kayıt grubu numarası
+     * @param tags Gruba eklenecek tag'ler
+     * @return Kayıt tamamlanınca biten CompletableFuture
+     */
+    public CompletableFuture<Void> addTagsToRegistrationGroupAsync(int regNumber, List<Tag> tags) {
+        registrationGroups.remove(regNumber);
+        List<Tag> groupTags = new ArrayList<>(tags);
+        return client.registerDevicesToMonitorAsync(groupTags, String.valueOf(regNumber)).thenRun(() -> {
+            registrationGroups.put(regNumber, groupTags);
+            LOGGER.log(Level.INFO, "Tag grubu kaydedildi. Grup No: {0}, Tag sayısı: {1}",
+                    new Object[]{regNumber, groupTags.size()});
+        });
+    }
+
     /**
      * Belirli bir kayıt grubundaki tüm tag'leri okur ve değerlerini günceller.
      *
@@ -291,7 +363,6 @@ public class TagRegistry {
             throw new IllegalArgumentException("Kayıt grubu bulunamadı: " + regNumber);
         }
 
-        XGBCNetClient client = XGBCNetClient.getInstance();
         List<Tag> updatedTags = client.executeRegisteredDeviceToMonitor(String.valueOf(regNumber));
 
         LOGGER.log(Level.FINE, "Tag grubu okundu. Grup No: {0}, Güncelenen tag sayısı: {1}",
@@ -301,13 +372,56 @@ public class TagRegistry {
     }
 
     /**
-     * Aktif sayfayı değiştirir ve sayfa tag'lerinin önceliklerini günceller.
+     * Aktif sayfayı değiştirir. Sayfa bazlı okuma açıksa önceki sayfanın tag'leri artık okunmaz,
+     * yeni sayfanın tag'leri kendi grubunda taranmaya başlar.
      *
      * @param pageId Aktif sayfa ID'si
      */
     public void setActivePage(String pageId) {
         this.activePageId = pageId;
         LOGGER.log(Level.INFO, "Aktif sayfa değişti: {0}", pageId);
+
+        PagePoller poller = pagePoller;
+        if (poller != null) {
+            poller.activate(pageId);
+        }
+    }
+
+    /**
+     * Sayfa bazlı okumayı açar: yalnızca kritik tag'ler ve aktif sayfanın tag'leri taranır.
+     * Kritik tag'ler tek grupta, her sayfa ise ilk gösteriminde kendisine verilen grupta okunur
+     * (pageGroupBase, pageGroupBase + 1, ...). Tag kayıtlarındaki değişiklikler bir sonraki
+     * {@link #setActivePage(String)} çağrısında uygulanır.
+     *
+     * @param scheduler Grupları okuyacak zamanlayıcı
+     * @param criticalGroup Kritik tag'lerin kayıt grubu numarası
+     * @param criticalPeriod Kritik tag'lerin okuma periyodu
+     * @param pageGroupBase Sayfa gruplarına verilecek ilk kayıt grubu numarası
+     * @param pagePeriod Aktif sayfa tag'lerinin okuma periyodu
+     * @param unit Periyotların birimi
+     */
+    public synchronized void enablePagePolling(ScanScheduler scheduler, int criticalGroup, long criticalPeriod,
+                                               int pageGroupBase, long pagePeriod, TimeUnit unit) {
+        disablePagePolling();
+        PagePoller poller = new PagePoller(this, scheduler, criticalGroup, unit.toNanos(criticalPeriod),
+                pageGroupBase, unit.toNanos(pagePeriod));
+        pagePoller = poller;
+        poller.activate(activePageId);
+    }
+
+    /**
+     * Sayfa bazlı okumayı kapatır, zamanlanmış sayfa ve kritik grupları zamanlayıcıdan çıkarır.
+     */
+    public synchronized void disablePagePolling() {
+        PagePoller poller = pagePoller;
+        if (poller != null) {
+            pagePoller = null;
+            poller.stop();
+        }
+    }
+
+    public boolean isPagePolling() {
+        return pagePoller != null;
     }
 
     /**
@@ -400,8 +514,11 @@ public class TagRegistry {
     public void shutdown() {
         LOGGER.info("Tag Registry kapatılıyor...");
 
+        disablePagePolling();
+
         businessLogicExecutor.shutdown();
         criticalBusinessExecutor.shutdown();
+        deadbandTimer.shutdownNow();
 
         try {
             // Düzgün kapatmayı dene
@@ -440,6 +557,14 @@ public class TagRegistry {
         stats.put("lastUpdateTime", lastUpdateTime);
         stats.put("registrationGroups", registrationGroups.size());
         stats.put("activeListeners", countActiveListeners());
+        PagePoller poller = pagePoller;
+        if (poller != null) {
+            // Sayfa bazlı okumada taranan tag sayısı (kritik + aktif sayfa)
+            stats.put("polledTags", poller.getPolledTagCount());
+        }
+        // Şerit başına bekleyen bildirim sayısı
+        stats.put("businessLaneBacklog", Arrays.stream(businessLogicExecutor.getBacklogs()).boxed().collect(Collectors.toList()));
+        stats.put("criticalLaneBacklog", Arrays.stream(criticalBusinessExecutor.getBacklogs()).boxed().collect(Collectors.toList()));
 
         return stats;
     }
@@ -456,4 +581,75 @@ public class TagRegistry {
         }
         return count;
     }
-}
\ No newline at end of file
+
+    /**
+     * Bir tag'in değer değişikliklerini deadband'ine göre süzer. Sayısal tag'lerde karşılaştırma son
+     * bildirilen değerle ham değer üzerinden yapılır, metin ayrıştırılmaz. Sayısal olmayan tag'lerde
+     * her değişiklik bildirilir.
+     */
+    private final class DeadbandFilter implements InvalidationListener {
+        private final Tag tag;
+        private final Runnable uiUpdate;
+        private double reference;
+        private boolean hasReference;
+        private long lastNotifiedNanos;
+        private ScheduledFuture<?> pending;
+
+        private DeadbandFilter(Tag tag) {
+            this.tag = tag;
+            this.uiUpdate = () -> notifyUiListeners(tag);
+            if (tag.hasRawValue()) {
+                reference = tag.getDoubleValue();
+                hasReference = true;
+            }
+        }
+
+        @Override
+        public void invalidated(Observable observable) {
+            if (!tag.isNumericTag()) {
+                notifyTagChanged(tag, uiUpdate);
+                return;
+            }
+            Deadband deadband = tag.getDeadband();
+            synchronized (this) {
+                double value = tag.getDoubleValue();
+                long interval = deadband.getMinIntervalNanos();
+                long now = System.nanoTime();
+                if (interval > 0 && hasReference) {
+                    long wait = lastNotifiedNanos + interval - now;
+                    if (wait > 0) {
+                        // Aralık dolunca son değer bildirilir
+                        if (pending == null) {
+                            try {
+                                pending = deadbandTimer.schedule(this::flush, wait, TimeUnit.NANOSECONDS);
+                            } catch (RejectedExecutionException e) {
+                                LOGGER.log(Level.WARNING, "Gecikmeli bildirim planlanamadı, zamanlayıcı kapatılmış: {0}",
+                                        tag.getName());
+                            }
+                        }
+                        return;
+                    }
+                } else if (hasReference && !deadband.isSignificant(reference, value)) {
+                    return;
+                }
+                reference = value;
+                hasReference = true;
+                lastNotifiedNanos = now;
+            }
+            notifyTagChanged(tag, uiUpdate);
+        }
+
+        private void flush() {
+            synchronized (this) {
+                pending = null;
+                double value = tag.getDoubleValue();
+                if (Double.compare(reference, value) == 0) {
+                    return; // Aralık içinde eski değerine dönmüş
+                }
+                reference = value;
+                lastNotifiedNanos = System.nanoTime();
+            }
+            notifyTagChanged(tag, uiUpdate);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package tr.com.logidex.cnetdedicated.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opt-in virtual thread support for command processing, control writes and listener dispatch.
+ * <p>
+ * The library is built for Java 17, so virtual threads (JDK 21+) are created through reflection.
+ * On older runtimes, or while the mode is disabled, platform threads are used as before.
+ * Enable it with {@link #setEnabled(boolean)} or {@code -Dcnetdedicated.virtualThreads=true}
+ * before creating registries and command managers.
+ */
+public final class VirtualThreads {
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreads.class.getName());
+    private static final String ENABLE_PROPERTY = "cnetdedicated.virtualThreads";
+
+    // Thread.ofVirtual(), Thread.Builder.name(String), Thread.Builder.factory()
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class);
+            builderFactory = builderClass.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            // JDK 21 öncesi, platform thread'leri kullanılır
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLE_PROPERTY);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether the running JVM has virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Turns the virtual thread mode on or off. Has no effect on JVMs without virtual threads.
+     */
+    public static void setEnabled(boolean enabled) {
+        if (enabled && !isSupported()) {
+            LOGGER.warning("Virtual threads require JDK 21+, platform threads will be used");
+        }
+        VirtualThreads.enabled = enabled;
+    }
+
+    /**
+     * Whether new threads are created as virtual threads
+     */
+    public static boolean isEnabled() {
+        return enabled && isSupported();
+    }
+
+    /**
+     * Thread factory for a long-lived worker. Platform threads are daemon threads with the given priority;
+     * virtual threads are always daemon and ignore the priority.
+     */
+    public static ThreadFactory newThreadFactory(String name, int priority) {
+        if (isEnabled()) {
+            ThreadFactory virtualFactory = virtualThreadFactory(name);
+            if (virtualFactory != null) {
+                return virtualFactory;
+            }
+        }
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setPriority(priority);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Starts a short-lived task, on a virtual thread when the mode is enabled.
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = null;
+        if (isEnabled()) {
+            ThreadFactory virtualFactory = virtualThreadFactory(name);
+            if (virtualFactory != null) {
+                thread = virtualFactory.newThread(task);
+            }
+        }
+        if (thread == null) {
+            thread = new Thread(task, name);
+        }
+        thread.start();
+        return thread;
+    }
+
+    private static ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.log(Level.WARNING, "Virtual thread could not be created, using a platform thread", e);
+            return null;
+        }
+    }
+}